@@ -0,0 +1,140 @@
+# PowerShell script to test cluster mode with several local processes
+# (1 coordinator + 2 nodes on different ports of this machine)
+# Usage: .\cluster_test.ps1 [-ClassPath <classpath>] [-Samples 300]
+#
+# Steps:
+#   1. start the coordinator (8080) and two nodes (8081, 8082)
+#   2. start two sessions without a TCP port (the coordinator assigns them) and check that the ports differ
+#   3. send data to both sessions with LoadGenerator and query /status through the coordinator
+#   4. kill the node that owns session "s1" and check that the session is moved to the other node
+#   5. start and stop the "default" session without a session id (same as the Web UI)
+
+param(
+    [string]$ClassPath = "..\java-server\target\classes;C:\Program Files\MATLAB\R2025b\extern\engines\java\jar\engine.jar",
+    [int]$Samples = 300,
+    [string]$Signals = "d_rel,v_ego",
+    [string]$Phi = "alw_[0,50](d_rel[t] - 1.4 * v_ego[t] >= 4)"
+)
+
+$coordinator = "http://localhost:8080"
+$procs = @{}
+$failures = 0
+
+function Start-CauMon([string]$name, [string[]]$opts) {
+    $argList = @("-cp", "`"$ClassPath`"", "org.CauMon.MonitoringHttpServer") + $opts
+    $p = Start-Process -FilePath "java" -ArgumentList $argList -PassThru -WindowStyle Minimized `
+        -RedirectStandardError "cluster_$name.log"
+    $procs[$name] = $p
+    Write-Host "Started $name (pid $($p.Id)): $($opts -join ' ')" -ForegroundColor Yellow
+}
+
+# JSON bodies are built by hand: the server's simple parser only reads flat string/number/boolean values
+function Invoke-Json([string]$method, [string]$url, [string]$json) {
+    if ($json) {
+        return Invoke-WebRequest -Method $method -Uri $url -Body ([System.Text.Encoding]::UTF8.GetBytes($json)) `
+            -ContentType "application/json" -UseBasicParsing
+    }
+    return Invoke-WebRequest -Method $method -Uri $url -UseBasicParsing
+}
+
+function Start-Body([string]$session) {
+    $s = if ($session) { "`"session`":`"$session`"," } else { "" }
+    return "{$s`"signals`":`"$Signals`",`"phi`":`"$Phi`"}"
+}
+
+function Get-Cluster() {
+    return (Invoke-WebRequest -Uri "$coordinator/cluster" -UseBasicParsing).Content | ConvertFrom-Json
+}
+
+function Check([bool]$ok, [string]$message) {
+    if ($ok) {
+        Write-Host "  OK   $message" -ForegroundColor Green
+    } else {
+        Write-Host "  FAIL $message" -ForegroundColor Red
+        $script:failures++
+    }
+}
+
+Write-Host "================================" -ForegroundColor Cyan
+Write-Host "  CauMon Cluster Test" -ForegroundColor Cyan
+Write-Host "================================" -ForegroundColor Cyan
+Write-Host ""
+
+try {
+    # 1. coordinator + 2 nodes
+    Start-CauMon "coordinator" @("--port=8080", "--role=coordinator", "--session-ports=20000-20099")
+    Start-Sleep -Seconds 2
+    Start-CauMon "node1" @("--port=8081", "--coordinator=$coordinator")
+    Start-CauMon "node2" @("--port=8082", "--coordinator=$coordinator")
+
+    $deadline = (Get-Date).AddSeconds(30)
+    do {
+        Start-Sleep -Seconds 1
+        try { $cluster = Get-Cluster } catch { $cluster = $null }
+    } while (($cluster -eq $null -or $cluster.nodes.Count -lt 2) -and (Get-Date) -lt $deadline)
+    Check ($cluster -ne $null -and $cluster.nodes.Count -eq 2) "2 nodes registered"
+
+    # 2. two sessions; the coordinator assigns the TCP ports
+    # (with hash placement both sessions may land on the same node; the ports must still differ)
+    foreach ($s in @("s1", "s2")) {
+        $r = Invoke-Json "POST" "$coordinator/start" (Start-Body $s)
+        Write-Host $r.Content
+    }
+    $cluster = Get-Cluster
+    $s1 = $cluster.sessions | Where-Object { $_.session -eq "s1" }
+    $s2 = $cluster.sessions | Where-Object { $_.session -eq "s2" }
+    Check ($s1.owner -ne $null -and $s2.owner -ne $null) "sessions placed (s1 on $($s1.owner), s2 on $($s2.owner))"
+    Check ($s1.port -ne $s2.port) "distinct TCP ports (s1=$($s1.port), s2=$($s2.port))"
+
+    # 3. data to both sessions, then status through the coordinator
+    & java -cp "$ClassPath" org.CauMon.LoadGenerator "--ports=$($s1.port),$($s2.port)" "--samples=$Samples" `
+        "--rate=100" "--format=binary" "--drain-ms=1000"
+    foreach ($s in @("s1", "s2")) {
+        $status = (Invoke-Json "GET" "$coordinator/status?session=$s" "").Content | ConvertFrom-Json
+        Check ($status.sessions[0].traceSize -eq $Samples) "$s received $($status.sessions[0].traceSize) samples"
+    }
+
+    # 4. kill the owner of s1 and wait for the rebalance (heartbeat timeout is 6 s)
+    $victim = if ($s1.owner -like "*8081") { "node1" } else { "node2" }
+    Write-Host "Killing $victim ($($s1.owner))..." -ForegroundColor Yellow
+    Stop-Process -Id $procs[$victim].Id -Force
+    $deadline = (Get-Date).AddSeconds(20)
+    do {
+        Start-Sleep -Seconds 1
+        $moved = (Get-Cluster).sessions | Where-Object { $_.session -eq "s1" }
+    } while (($moved.owner -eq $null -or $moved.owner -eq $s1.owner) -and (Get-Date) -lt $deadline)
+    Check ($moved.owner -ne $null -and $moved.owner -ne $s1.owner) "s1 moved to $($moved.owner)"
+    Check ($moved.port -eq $s1.port) "s1 keeps TCP port $($moved.port)"
+
+    # 5. default session (no session id, like the Web UI)
+    $r = Invoke-Json "POST" "$coordinator/start" (Start-Body "")
+    Check ($r.StatusCode -eq 200) "default session started"
+    $r = Invoke-Json "GET" "$coordinator/status?session=default" ""
+    Check ($r.StatusCode -eq 200) "default session status"
+    $r = Invoke-Json "POST" "$coordinator/stop" "{}"
+    Check ($r.StatusCode -eq 200) "default session stopped"
+
+    foreach ($s in @("s1", "s2")) {
+        Invoke-Json "POST" "$coordinator/stop" "{`"session`":`"$s`"}" | Out-Null
+    }
+} catch {
+    Write-Host ""
+    Write-Host "Error: $_" -ForegroundColor Red
+    $failures++
+} finally {
+    foreach ($p in $procs.Values) {
+        if (-not $p.HasExited) { Stop-Process -Id $p.Id -Force }
+    }
+}
+
+Write-Host ""
+if ($failures -eq 0) {
+    Write-Host "================================" -ForegroundColor Green
+    Write-Host "  All cluster checks passed." -ForegroundColor Green
+    Write-Host "================================" -ForegroundColor Green
+} else {
+    Write-Host "================================" -ForegroundColor Red
+    Write-Host "  $failures check(s) failed. See cluster_*.log" -ForegroundColor Red
+    Write-Host "================================" -ForegroundColor Red
+    exit 1
+}
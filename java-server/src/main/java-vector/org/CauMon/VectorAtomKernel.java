@@ -0,0 +1,46 @@
+package org.CauMon;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API（jdk.incubator.vector）による {@link AtomKernel}。
+ * -P vector でビルドした場合のみ含まれ、{@link AtomKernels#best()} からリフレクションで生成される。
+ * 各レーンの加算順序はスカラー版と同じで、結果はビット単位で一致する。
+ */
+final class VectorAtomKernel implements AtomKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void evaluate(double[][] cols, int n, int[] columns, double[] coefs, double constant, double[] out, int outOffset) {
+        int step = SPECIES.length();
+        int upper = SPECIES.loopBound(n);
+        DoubleVector base = DoubleVector.broadcast(SPECIES, constant);
+        int i = 0;
+        for (; i < upper; i += step) {
+            base.intoArray(out, outOffset + i);
+        }
+        for (; i < n; i++) {
+            out[outOffset + i] = constant;
+        }
+        for (int j = 0; j < columns.length; j++) {
+            double[] col = cols[columns[j]];
+            double k = coefs[j];
+            i = 0;
+            for (; i < upper; i += step) {
+                DoubleVector x = DoubleVector.fromArray(SPECIES, col, i);
+                DoubleVector acc = DoubleVector.fromArray(SPECIES, out, outOffset + i);
+                acc.add(x.mul(k)).intoArray(out, outOffset + i);
+            }
+            for (; i < n; i++) {
+                out[outOffset + i] += k * col[i];
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.vectorBitSize() + "-bit)";
+    }
+}
@@ -0,0 +1,103 @@
+package org.CauMon;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.DoubleConsumer;
+
+/**
+ * {@link AtomProgram} の原子述語の値を、受信履歴に対して増分的に計算・保持する。
+ * 評価済みの行は再計算せず、新たに到着した行だけを最大 {@link #MAX_BATCH} 行ずつ
+ * {@link AtomKernel} でまとめて計算する。
+ */
+final class AtomEvaluator {
+
+    static final int MAX_BATCH = 4096;
+
+    private final AtomProgram program;
+    private final AtomKernel kernel;
+    private final int width;
+    private final int[] usedColumns;
+
+    // [原子述語][行]
+    private double[][] values;
+    private int size = 0;
+    // 入力列のバッチ用バッファ（使う列のみ確保）
+    private final double[][] batchCols;
+
+    private long rows = 0;
+    private long batches = 0;
+    private long nanos = 0;
+
+    AtomEvaluator(AtomProgram program, AtomKernel kernel, int width) {
+        this.program = program;
+        this.kernel = kernel;
+        this.width = width;
+        boolean[] used = new boolean[width];
+        for (int k = 0; k < program.atomCount(); k++) {
+            for (int c : program.atom(k).columns) used[c] = true;
+        }
+        int n = 0;
+        for (boolean u : used) if (u) n++;
+        usedColumns = new int[n];
+        n = 0;
+        for (int c = 0; c < width; c++) if (used[c]) usedColumns[n++] = c;
+        batchCols = new double[width][];
+        for (int c : usedColumns) batchCols[c] = new double[MAX_BATCH];
+        values = new double[program.atomCount()][1024];
+    }
+
+    /** 入力の列数（time を含む） */
+    int width() {
+        return width;
+    }
+
+    AtomProgram program() {
+        return program;
+    }
+
+    /**
+     * スナップショットまでの原子述語の値を計算する（未計算の行のみ）。
+     */
+    synchronized void update(TraceHistory.Snapshot snapshot) {
+        int target = snapshot.size();
+        if (target < size) {
+            // 履歴がクリアされた
+            size = 0;
+        }
+        if (target == size) return;
+        if (values.length > 0 && values[0].length < target) {
+            int cap = Math.max(target, values[0].length * 2);
+            for (int k = 0; k < values.length; k++) values[k] = Arrays.copyOf(values[k], cap);
+        }
+        for (int from = size; from < target; from += MAX_BATCH) {
+            int n = Math.min(MAX_BATCH, target - from);
+            for (int c : usedColumns) {
+                snapshot.readColumn(c, from, from + n, batchCols[c], 0);
+            }
+            long start = System.nanoTime();
+            for (int k = 0; k < values.length; k++) {
+                AtomProgram.Atom a = program.atom(k);
+                kernel.evaluate(batchCols, n, a.columns, a.coefs, a.constant, values[k], from);
+            }
+            nanos += System.nanoTime() - start;
+            rows += n;
+            batches++;
+        }
+        size = target;
+    }
+
+    /**
+     * k 番目の原子述語の先頭 n 行の値を渡す。
+     */
+    synchronized void forEachValue(int k, int n, DoubleConsumer out) {
+        double[] v = values[k];
+        int m = Math.min(n, size);
+        for (int i = 0; i < m; i++) out.accept(v[i]);
+    }
+
+    synchronized String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"compiled\":true,\"kernel\":\"%s\",\"atoms\":%d,\"rows\":%d,\"batches\":%d,\"mRowsPerSec\":%.3f}",
+                kernel.name(), program.atomCount(), rows, batches, nanos == 0 ? 0.0 : rows * 1000.0 / nanos);
+    }
+}
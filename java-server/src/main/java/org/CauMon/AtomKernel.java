@@ -0,0 +1,17 @@
+package org.CauMon;
+
+/**
+ * 原子述語の一次式をバッチで評価するカーネル。
+ * 標準の実装は {@link AtomKernels} を参照。
+ */
+interface AtomKernel {
+
+    /**
+     * out[outOffset + i] = constant + Σ coefs[j] * cols[columns[j]][i]（i = 0..n-1）を計算する。
+     * 項は j の昇順に加算する（実装間で丸め誤差を一致させるため、融合積和は使わない）。
+     */
+    void evaluate(double[][] cols, int n, int[] columns, double[] coefs, double constant, double[] out, int outOffset);
+
+    /** ログ・統計用の名前 */
+    String name();
+}
@@ -0,0 +1,122 @@
+package org.CauMon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 原子述語カーネル（スカラー版 / Vector API 版）のバッチあたりスループットを計測する。
+ * Vector API 版は -P vector でビルドし、--add-modules jdk.incubator.vector を付けて実行した場合のみ計測される。
+ *
+ * オプション（--key=value）:
+ *   --signals=d_rel,v_ego        信号名
+ *   --phi=...                    STL 式（既定は MonitoringTCPServer の既定式）
+ *   --batches=16,64,256,1024,4096  バッチサイズ（行数）
+ *   --millis=1000                バッチサイズ・カーネルごとの計測時間
+ */
+public final class AtomKernelBenchmark {
+
+    private AtomKernelBenchmark() {}
+
+    public static void main(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+            opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String signals = opts.getOrDefault("signals", "d_rel,v_ego");
+        String phi = opts.getOrDefault("phi", "alw_[0,50](d_rel[t] - 1.4 * v_ego[t] >= 4)");
+        String[] batchStrs = opts.getOrDefault("batches", "16,64,256,1024,4096").split(",");
+        long millis = Long.parseLong(opts.getOrDefault("millis", "1000"));
+
+        AtomProgram program = AtomProgram.compile(signals, phi);
+        int width = signals.split(",").length + 1;
+        int maxBatch = 0;
+        int[] batches = new int[batchStrs.length];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = Integer.parseInt(batchStrs[i].trim());
+            maxBatch = Math.max(maxBatch, batches[i]);
+        }
+
+        // 合成データ（time 列 + 正弦波の信号列）
+        double[][] cols = new double[width][maxBatch];
+        for (int i = 0; i < maxBatch; i++) {
+            cols[0][i] = i * 0.1;
+            for (int c = 1; c < width; c++) {
+                cols[c][i] = 50.0 + 10.0 * Math.sin(i * 0.01 * c) + c;
+            }
+        }
+
+        List<AtomKernel> kernels = new ArrayList<>();
+        kernels.add(new AtomKernels.Scalar());
+        AtomKernel vector = AtomKernels.vector();
+        if (vector != null) kernels.add(vector);
+
+        System.out.println("atoms: " + program);
+        System.out.println("Java " + System.getProperty("java.version") + ", kernels: " + names(kernels)
+                + (vector == null ? " (Vector API unavailable: build with -P vector and run with --add-modules jdk.incubator.vector)" : ""));
+
+        if (vector != null) {
+            double[] a = new double[maxBatch];
+            double[] b = new double[maxBatch];
+            for (int k = 0; k < program.atomCount(); k++) {
+                AtomProgram.Atom atom = program.atom(k);
+                kernels.get(0).evaluate(cols, maxBatch, atom.columns, atom.coefs, atom.constant, a, 0);
+                vector.evaluate(cols, maxBatch, atom.columns, atom.coefs, atom.constant, b, 0);
+                for (int i = 0; i < maxBatch; i++) {
+                    if (Double.doubleToRawLongBits(a[i]) != Double.doubleToRawLongBits(b[i])) {
+                        System.out.printf(Locale.ROOT, "MISMATCH atom%d row %d: scalar=%s vector=%s%n", k + 1, i, a[i], b[i]);
+                        System.exit(1);
+                    }
+                }
+            }
+            System.out.println("vector results are bitwise identical to scalar");
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-18s %8s %14s %10s%n", "kernel", "batch", "M rows/s", "ns/batch");
+        double[][] out = new double[program.atomCount()][maxBatch];
+        for (int batch : batches) {
+            for (AtomKernel kernel : kernels) {
+                // ウォームアップ（JIT コンパイル）
+                run(kernel, program, cols, batch, out, Math.max(200_000 / Math.max(1, batch), 100));
+                long iterations = 0;
+                long start = System.nanoTime();
+                long deadline = start + millis * 1_000_000L;
+                long now;
+                do {
+                    run(kernel, program, cols, batch, out, 64);
+                    iterations += 64;
+                    now = System.nanoTime();
+                } while (now < deadline);
+                double elapsed = now - start;
+                System.out.printf(Locale.ROOT, "%-18s %8d %14.1f %10.1f%n", kernel.name(), batch,
+                        iterations * batch * 1000.0 / elapsed, elapsed / iterations);
+            }
+        }
+    }
+
+    private static void run(AtomKernel kernel, AtomProgram program, double[][] cols, int batch, double[][] out, long iterations) {
+        for (long it = 0; it < iterations; it++) {
+            for (int k = 0; k < program.atomCount(); k++) {
+                AtomProgram.Atom atom = program.atom(k);
+                kernel.evaluate(cols, batch, atom.columns, atom.coefs, atom.constant, out[k], 0);
+            }
+        }
+    }
+
+    private static String names(List<AtomKernel> kernels) {
+        StringBuilder sb = new StringBuilder();
+        for (AtomKernel k : kernels) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(k.name());
+        }
+        return sb.toString();
+    }
+}
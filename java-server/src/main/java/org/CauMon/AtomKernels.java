@@ -0,0 +1,70 @@
+package org.CauMon;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link AtomKernel} の標準実装。
+ * Vector API 版（VectorAtomKernel）は -P vector でビルドした場合のみ含まれ、
+ * 実行時に jdk.incubator.vector モジュールが有効（--add-modules jdk.incubator.vector）なときに使う。
+ * それ以外はスカラー版を使う。
+ */
+final class AtomKernels {
+
+    private static final Logger logger = Logger.getLogger(AtomKernels.class.getName());
+    private static final String VECTOR_KERNEL_CLASS = "org.CauMon.VectorAtomKernel";
+
+    private AtomKernels() {}
+
+    /**
+     * 利用可能な最速のカーネルを返す。システムプロパティ caumon.atoms.scalar=true でスカラー版に固定する。
+     */
+    static AtomKernel best() {
+        if (!Boolean.getBoolean("caumon.atoms.scalar")) {
+            AtomKernel vector = vector();
+            if (vector != null) return vector;
+        }
+        return new Scalar();
+    }
+
+    /**
+     * Vector API 版を返す（利用できなければ null）。
+     */
+    static AtomKernel vector() {
+        try {
+            Class<?> c = Class.forName(VECTOR_KERNEL_CLASS);
+            return (AtomKernel) c.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            // Java 11 向けビルド（-P vector なし）
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // jdk.incubator.vector モジュールが有効でない
+            logger.log(Level.FINE, "Vector API kernel unavailable", e);
+            return null;
+        }
+    }
+
+    /**
+     * スカラー版（どの Java バージョンでも動作する）
+     */
+    static final class Scalar implements AtomKernel {
+        @Override
+        public void evaluate(double[][] cols, int n, int[] columns, double[] coefs, double constant, double[] out, int outOffset) {
+            for (int i = 0; i < n; i++) {
+                out[outOffset + i] = constant;
+            }
+            for (int j = 0; j < columns.length; j++) {
+                double[] col = cols[columns[j]];
+                double k = coefs[j];
+                for (int i = 0; i < n; i++) {
+                    out[outOffset + i] += k * col[i];
+                }
+            }
+        }
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package org.CauMon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * STL 式中の原子述語（例: d_rel[t] - 1.4 * v_ego[t] >= 4）を、信号列の一次式として Java 側で評価するためのプログラム。
+ * 各原子述語は定量値 value = constant + Σ coefs[j] * trace[columns[j]] に変換され、
+ * STL 式中の原子述語は "atomK[t] > 0" に置き換えられる。stl_eval_mex_pw には原子述語の値の列だけを渡し、
+ * 時相演算子の評価のみを行わせる。
+ *
+ * stl_atom の定量値は ">" 系で 左辺 - 右辺、"<" 系で 右辺 - 左辺 であり、区分線形の信号の一次結合は
+ * 同じ折れ点を持つ区分線形の信号になるため、置き換え前後でロバストネスは一致する。
+ * 一次式でない原子述語（信号同士の積、関数呼び出し、時刻シフト等）を含む式はコンパイルできない。
+ */
+final class AtomProgram {
+
+    static final String ATOM_PREFIX = "atom";
+
+    /**
+     * 1つの原子述語の一次式
+     */
+    static final class Atom {
+        final String source;
+        final int[] columns;
+        final double[] coefs;
+        final double constant;
+
+        Atom(String source, int[] columns, double[] coefs, double constant) {
+            this.source = source;
+            this.columns = columns;
+            this.coefs = coefs;
+            this.constant = constant;
+        }
+    }
+
+    private final Atom[] atoms;
+    private final String rewrittenPhi;
+    private final String atomSignalStr;
+
+    private AtomProgram(Atom[] atoms, String rewrittenPhi, String atomSignalStr) {
+        this.atoms = atoms;
+        this.rewrittenPhi = rewrittenPhi;
+        this.atomSignalStr = atomSignalStr;
+    }
+
+    int atomCount() {
+        return atoms.length;
+    }
+
+    Atom atom(int k) {
+        return atoms[k];
+    }
+
+    /** 原子述語を atomK[t] > 0 に置き換えた STL 式 */
+    String rewrittenPhi() {
+        return rewrittenPhi;
+    }
+
+    /** 置き換え後の STL 式の信号名（"atom1,atom2,..."） */
+    String atomSignalStr() {
+        return atomSignalStr;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < atoms.length; k++) {
+            if (k > 0) sb.append("; ");
+            sb.append(ATOM_PREFIX).append(k + 1).append(" := ").append(atoms[k].source);
+        }
+        return sb.append(" => ").append(rewrittenPhi).toString();
+    }
+
+    /**
+     * STL 式をコンパイルする。
+     * @param signalStr カンマ区切りの信号名（time を除く）。i 番目の信号は trace の i+1 行目
+     * @param phiStr STL 式
+     * @return コンパイル結果
+     * @throws IllegalArgumentException 一次式として評価できない原子述語を含む場合
+     */
+    static AtomProgram compile(String signalStr, String phiStr) {
+        if (signalStr == null || phiStr == null) throw new IllegalArgumentException("signals or phi is not set");
+        Map<String, Integer> signalColumns = new HashMap<>();
+        String[] names = signalStr.split(",");
+        for (int i = 0; i < names.length; i++) {
+            String n = names[i].trim();
+            if (!n.isEmpty()) signalColumns.put(n, i + 1);
+        }
+        int width = names.length + 1;
+
+        List<Token> tokens = tokenize(phiStr);
+        List<int[]> spans = new ArrayList<>(); // [先頭トークン, 比較演算子, 末尾トークン]
+        for (int c = 0; c < tokens.size(); c++) {
+            if (tokens.get(c).type != TokenType.CMP) continue;
+            int start = expandLeft(tokens, c);
+            int end = expandRight(tokens, c);
+            if (start == c || end == c) {
+                throw new IllegalArgumentException("Comparison without operand at offset " + tokens.get(c).start);
+            }
+            if (!spans.isEmpty() && spans.get(spans.size() - 1)[2] >= start) {
+                throw new IllegalArgumentException("Chained comparison at offset " + tokens.get(c).start);
+            }
+            spans.add(new int[] { start, c, end });
+        }
+        if (spans.isEmpty()) throw new IllegalArgumentException("No atomic predicates found");
+
+        // 原子述語の外に信号参照が残っていれば、元の信号を MEX に渡す必要がある
+        int s = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (s < spans.size() && i == spans.get(s)[0]) {
+                i = spans.get(s)[2];
+                s++;
+                continue;
+            }
+            Token t = tokens.get(i);
+            if (t.type == TokenType.IDENT && signalColumns.containsKey(t.text)) {
+                throw new IllegalArgumentException("Signal '" + t.text + "' is used outside an atomic predicate");
+            }
+        }
+
+        Map<String, Integer> dedup = new LinkedHashMap<>();
+        List<Atom> atoms = new ArrayList<>();
+        StringBuilder phi = new StringBuilder();
+        int copied = 0;
+        for (int[] span : spans) {
+            Token cmp = tokens.get(span[1]);
+            Linear left = new LinearParser(tokens, span[0], span[1], signalColumns, width).parseAll();
+            Linear right = new LinearParser(tokens, span[1] + 1, span[2] + 1, signalColumns, width).parseAll();
+            Linear value;
+            if (cmp.text.startsWith("<")) {
+                value = right.minus(left);
+            } else if (cmp.text.startsWith(">")) {
+                value = left.minus(right);
+            } else {
+                throw new IllegalArgumentException("Unsupported comparison '" + cmp.text + "'");
+            }
+            String source = phiStr.substring(tokens.get(span[0]).start, tokens.get(span[2]).end).trim();
+            String key = value.key();
+            Integer index = dedup.get(key);
+            if (index == null) {
+                index = atoms.size();
+                dedup.put(key, index);
+                atoms.add(value.toAtom(source));
+            }
+            phi.append(phiStr, copied, tokens.get(span[0]).start)
+               .append(ATOM_PREFIX).append(index + 1).append("[t] > 0");
+            copied = tokens.get(span[2]).end;
+        }
+        phi.append(phiStr.substring(copied));
+
+        StringBuilder sig = new StringBuilder();
+        for (int k = 0; k < atoms.size(); k++) {
+            String name = ATOM_PREFIX + (k + 1);
+            if (signalColumns.containsKey(name)) {
+                throw new IllegalArgumentException("Signal name '" + name + "' collides with atom names");
+            }
+            if (k > 0) sig.append(',');
+            sig.append(name);
+        }
+        return new AtomProgram(atoms.toArray(new Atom[0]), phi.toString(), sig.toString());
+    }
+
+    // ===== 字句解析 =====
+
+    private enum TokenType { NUM, IDENT, PLUS, MINUS, STAR, SLASH, LPAREN, RPAREN, LBRACK, RBRACK, COMMA, CMP, OTHER }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        final int start;
+        final int end;
+
+        Token(TokenType type, String text, int start, int end) {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static List<Token> tokenize(String s) {
+        List<Token> out = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            if (Character.isDigit(c) || (c == '.' && i + 1 < s.length() && Character.isDigit(s.charAt(i + 1)))) {
+                while (i < s.length() && (Character.isDigit(s.charAt(i)) || s.charAt(i) == '.')) i++;
+                if (i < s.length() && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+                    int j = i + 1;
+                    if (j < s.length() && (s.charAt(j) == '+' || s.charAt(j) == '-')) j++;
+                    if (j < s.length() && Character.isDigit(s.charAt(j))) {
+                        i = j;
+                        while (i < s.length() && Character.isDigit(s.charAt(i))) i++;
+                    }
+                }
+                out.add(new Token(TokenType.NUM, s.substring(start, i), start, i));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_')) i++;
+                out.add(new Token(TokenType.IDENT, s.substring(start, i), start, i));
+            } else if (c == '<' || c == '>') {
+                i++;
+                if (i < s.length() && s.charAt(i) == '=') i++;
+                out.add(new Token(TokenType.CMP, s.substring(start, i), start, i));
+            } else if (c == '=' && i + 1 < s.length() && s.charAt(i + 1) == '=') {
+                i += 2;
+                out.add(new Token(TokenType.CMP, "==", start, i));
+            } else if (c == '=' && i + 1 < s.length() && s.charAt(i + 1) == '>') {
+                i += 2;
+                out.add(new Token(TokenType.OTHER, "=>", start, i));
+            } else {
+                i++;
+                TokenType t;
+                switch (c) {
+                    case '+': t = TokenType.PLUS; break;
+                    case '-': t = TokenType.MINUS; break;
+                    case '*': t = TokenType.STAR; break;
+                    case '/': t = TokenType.SLASH; break;
+                    case '(': t = TokenType.LPAREN; break;
+                    case ')': t = TokenType.RPAREN; break;
+                    case '[': t = TokenType.LBRACK; break;
+                    case ']': t = TokenType.RBRACK; break;
+                    case ',': t = TokenType.COMMA; break;
+                    default: t = TokenType.OTHER; break;
+                }
+                out.add(new Token(t, String.valueOf(c), start, i));
+            }
+        }
+        return out;
+    }
+
+    private static boolean isKeyword(Token t) {
+        if (t.type != TokenType.IDENT) return false;
+        switch (t.text.toLowerCase(Locale.ROOT)) {
+            case "and": case "or": case "not": case "implies":
+            case "alw": case "ev": case "until": case "alw_": case "ev_": case "until_":
+            case "true": case "false":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isOperand(Token t) {
+        switch (t.type) {
+            case NUM: case PLUS: case MINUS: case STAR: case SLASH:
+                return true;
+            case IDENT:
+                return !isKeyword(t);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 比較演算子 c の左辺の先頭トークンを返す（左辺が無ければ c）。
+     */
+    private static int expandLeft(List<Token> tokens, int c) {
+        int start = c;
+        int i = c - 1;
+        while (i >= 0) {
+            Token t = tokens.get(i);
+            if (t.type == TokenType.RPAREN || t.type == TokenType.RBRACK) {
+                int open = matchBackward(tokens, i);
+                if (open < 0) break;
+                if (t.type == TokenType.RBRACK) {
+                    // name[t] の信号参照。alw_[a,b] のような時相演算子の区間なら含めない
+                    if (open == 0 || tokens.get(open - 1).type != TokenType.IDENT || isKeyword(tokens.get(open - 1))) break;
+                    start = open - 1;
+                    i = open - 2;
+                } else {
+                    start = open;
+                    i = open - 1;
+                    if (i >= 0 && tokens.get(i).type == TokenType.IDENT && !isKeyword(tokens.get(i))) {
+                        start = i; // 関数呼び出し（一次式の解析で失敗させる）
+                        i--;
+                    }
+                }
+            } else if (isOperand(t)) {
+                start = i;
+                i--;
+            } else {
+                break;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 比較演算子 c の右辺の末尾トークンを返す（右辺が無ければ c）。
+     */
+    private static int expandRight(List<Token> tokens, int c) {
+        int end = c;
+        int i = c + 1;
+        while (i < tokens.size()) {
+            Token t = tokens.get(i);
+            if (t.type == TokenType.LPAREN || t.type == TokenType.LBRACK) {
+                if (t.type == TokenType.LBRACK && (i == c + 1 || tokens.get(i - 1).type != TokenType.IDENT)) break;
+                int close = matchForward(tokens, i);
+                if (close < 0) break;
+                end = close;
+                i = close + 1;
+            } else if (isOperand(t)) {
+                end = i;
+                i++;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static int matchBackward(List<Token> tokens, int close) {
+        int depth = 0;
+        for (int i = close; i >= 0; i--) {
+            TokenType t = tokens.get(i).type;
+            if (t == TokenType.RPAREN || t == TokenType.RBRACK) depth++;
+            else if (t == TokenType.LPAREN || t == TokenType.LBRACK) {
+                if (--depth == 0) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int matchForward(List<Token> tokens, int open) {
+        int depth = 0;
+        for (int i = open; i < tokens.size(); i++) {
+            TokenType t = tokens.get(i).type;
+            if (t == TokenType.LPAREN || t == TokenType.LBRACK) depth++;
+            else if (t == TokenType.RPAREN || t == TokenType.RBRACK) {
+                if (--depth == 0) return i;
+            }
+        }
+        return -1;
+    }
+
+    // ===== 一次式の構文解析 =====
+
+    /**
+     * 一次式 constant + Σ coefs[col] * trace[col]（coefs は trace の列数分）
+     */
+    private static final class Linear {
+        final double[] coefs;
+        final double constant;
+
+        Linear(double[] coefs, double constant) {
+            this.coefs = coefs;
+            this.constant = constant;
+        }
+
+        boolean isConstant() {
+            for (double c : coefs) if (c != 0.0) return false;
+            return true;
+        }
+
+        Linear plus(Linear o) {
+            double[] c = new double[coefs.length];
+            for (int i = 0; i < c.length; i++) c[i] = coefs[i] + o.coefs[i];
+            return new Linear(c, constant + o.constant);
+        }
+
+        Linear minus(Linear o) {
+            return plus(o.scale(-1.0));
+        }
+
+        Linear scale(double k) {
+            double[] c = new double[coefs.length];
+            for (int i = 0; i < c.length; i++) c[i] = coefs[i] * k;
+            return new Linear(c, constant * k);
+        }
+
+        String key() {
+            return Arrays.toString(coefs) + "+" + constant;
+        }
+
+        Atom toAtom(String source) {
+            int n = 0;
+            for (double c : coefs) if (c != 0.0) n++;
+            int[] columns = new int[n];
+            double[] values = new double[n];
+            int k = 0;
+            for (int i = 0; i < coefs.length; i++) {
+                if (coefs[i] != 0.0) {
+                    columns[k] = i;
+                    values[k] = coefs[i];
+                    k++;
+                }
+            }
+            return new Atom(source, columns, values, constant);
+        }
+    }
+
+    /**
+     * expr := term (('+'|'-') term)*, term := unary (('*'|'/') unary)*,
+     * unary := ('+'|'-') unary | primary, primary := NUM | name '[' t ']' | '(' expr ')'
+     */
+    private static final class LinearParser {
+        private final List<Token> tokens;
+        private final int end;
+        private final Map<String, Integer> signalColumns;
+        private final int width;
+        private int pos;
+
+        LinearParser(List<Token> tokens, int from, int to, Map<String, Integer> signalColumns, int width) {
+            this.tokens = tokens;
+            this.pos = from;
+            this.end = to;
+            this.signalColumns = signalColumns;
+            this.width = width;
+        }
+
+        Linear parseAll() {
+            Linear v = expr();
+            if (pos != end) throw error("Unexpected token");
+            return v;
+        }
+
+        private Token peek() {
+            return pos < end ? tokens.get(pos) : null;
+        }
+
+        private IllegalArgumentException error(String msg) {
+            Token t = peek();
+            return new IllegalArgumentException(msg + (t != null ? " '" + t.text + "' at offset " + t.start : " at end of atom"));
+        }
+
+        private Linear expr() {
+            Linear v = term();
+            while (peek() != null && (peek().type == TokenType.PLUS || peek().type == TokenType.MINUS)) {
+                boolean minus = tokens.get(pos++).type == TokenType.MINUS;
+                Linear r = term();
+                v = minus ? v.minus(r) : v.plus(r);
+            }
+            return v;
+        }
+
+        private Linear term() {
+            Linear v = unary();
+            while (peek() != null && (peek().type == TokenType.STAR || peek().type == TokenType.SLASH)) {
+                boolean div = tokens.get(pos++).type == TokenType.SLASH;
+                Linear r = unary();
+                if (div) {
+                    if (!r.isConstant() || r.constant == 0.0) throw error("Division by a non-constant or zero");
+                    v = v.scale(1.0 / r.constant);
+                } else if (r.isConstant()) {
+                    v = v.scale(r.constant);
+                } else if (v.isConstant()) {
+                    v = r.scale(v.constant);
+                } else {
+                    throw error("Nonlinear product of signals");
+                }
+            }
+            return v;
+        }
+
+        private Linear unary() {
+            Token t = peek();
+            if (t != null && t.type == TokenType.MINUS) {
+                pos++;
+                return unary().scale(-1.0);
+            }
+            if (t != null && t.type == TokenType.PLUS) {
+                pos++;
+                return unary();
+            }
+            return primary();
+        }
+
+        private Linear primary() {
+            Token t = peek();
+            if (t == null) throw error("Missing operand");
+            if (t.type == TokenType.NUM) {
+                pos++;
+                return new Linear(new double[width], Double.parseDouble(t.text));
+            }
+            if (t.type == TokenType.LPAREN) {
+                pos++;
+                Linear v = expr();
+                if (peek() == null || peek().type != TokenType.RPAREN) throw error("Missing ')'");
+                pos++;
+                return v;
+            }
+            if (t.type == TokenType.IDENT) {
+                Integer col = signalColumns.get(t.text);
+                if (col == null) throw error("Unknown signal or function");
+                pos++;
+                if (pos + 2 >= end || tokens.get(pos).type != TokenType.LBRACK
+                        || !"t".equals(tokens.get(pos + 1).text) || tokens.get(pos + 2).type != TokenType.RBRACK) {
+                    throw error("Only name[t] signal references are supported");
+                }
+                pos += 3;
+                double[] c = new double[width];
+                c[col] = 1.0;
+                return new Linear(c, 0.0);
+            }
+            throw error("Unexpected token");
+        }
+    }
+}
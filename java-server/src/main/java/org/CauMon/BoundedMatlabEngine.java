@@ -0,0 +1,369 @@
+package org.CauMon;
+
+import com.mathworks.engine.MatlabEngine;
+import com.mathworks.engine.MatlabExecutionException;
+import com.mathworks.engine.MatlabSyntaxException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * MATLAB エンジン呼び出しに期限を設けるラッパー。
+ * 呼び出しはすべて evalAsync / getVariableAsync / putVariableAsync で発行し、呼び出し種別ごとの期限までに完了しなければ
+ * Future を cancel(true) して {@link TimeoutException} を投げる。期限は trace の行数に応じて延長する（{@link Call}）。
+ *
+ * 連続して failureThreshold 回失敗（期限切れ・エンジン例外）するとサーキットブレーカーが開き、
+ * cooldownMillis の間は呼び出しを発行せずに {@link CircuitOpenException} を投げる。
+ * 経過後は試行呼び出しを1つだけ許可し（半開、その間の他の呼び出しは発行しない）、成功すれば閉じ、失敗すれば再び開く。
+ * ブレーカーの判定は呼び出しを発行する前に行うため、応答しないエンジンにコマンドが積み上がることはない。
+ * MATLAB スクリプトのエラー（STL 式の誤りなど）はエンジンが応答した結果なので失敗に数えない。
+ * 試行呼び出しが {@link #STUCK_WARNING_TRIALS} 回続けて失敗するごとに WARNING を出し、{@link #toJson()} にも示す。
+ */
+final class BoundedMatlabEngine {
+
+    private static final Logger logger = Logger.getLogger(BoundedMatlabEngine.class.getName());
+
+    static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    static final long DEFAULT_COOLDOWN_MILLIS = 5000L;
+    static final int STUCK_WARNING_TRIALS = 3;
+
+    /**
+     * 呼び出し種別。種別ごとに期限とレイテンシを管理する。
+     * trace 全体を扱う呼び出しは、期限に 1000 行あたり millisPer1000Rows を加える
+     * （長い trace で毎回期限切れになり、ブレーカーが開いたままになるのを防ぐ）。
+     */
+    enum Call {
+        /** cd / configure / ウォームアップなどの初期化 */
+        SETUP(120_000L, 0L),
+        /** trace の設定と stl_eval_mex_pw */
+        ROBUSTNESS(2_000L, 20L),
+        /** stl_causation_opt */
+        CAUSATION(10_000L, 50L),
+        /** visualize（最終保存を含む） */
+        VISUALIZE(15_000L, 0L),
+        /** ワークスペース変数の取得・小さな設定 */
+        VARIABLE(1_000L, 0L);
+
+        final long defaultTimeoutMillis;
+        final long millisPer1000Rows;
+
+        Call(long defaultTimeoutMillis, long millisPer1000Rows) {
+            this.defaultTimeoutMillis = defaultTimeoutMillis;
+            this.millisPer1000Rows = millisPer1000Rows;
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * サーキットブレーカーが開いているため呼び出しを発行しなかった。
+     */
+    static final class CircuitOpenException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final MatlabEngine engine;
+    private final int failureThreshold;
+    private final long cooldownMillis;
+    private final Map<Call, Long> timeouts = new EnumMap<>(Call.class);
+    private final Map<Call, CallStats> stats = new EnumMap<>(Call.class);
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtMillis = 0L;
+    private long rejected = 0;
+    private long opened = 0;
+    // 開いてから（閉じるまでの間に）失敗した試行呼び出しの数と、最初に開いた時刻
+    private int failedTrials = 0;
+    private long openSinceMillis = 0L;
+    private String lastFailure = null;
+
+    BoundedMatlabEngine(MatlabEngine engine) {
+        this(engine, DEFAULT_FAILURE_THRESHOLD, DEFAULT_COOLDOWN_MILLIS);
+    }
+
+    /**
+     * @param engine 起動済みの MATLAB エンジン
+     * @param failureThreshold ブレーカーを開くまでの連続失敗回数
+     * @param cooldownMillis ブレーカーを開いてから試行呼び出しを許可するまでの時間
+     */
+    BoundedMatlabEngine(MatlabEngine engine, int failureThreshold, long cooldownMillis) {
+        this.engine = engine;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownMillis = Math.max(0L, cooldownMillis);
+        for (Call c : Call.values()) {
+            timeouts.put(c, c.defaultTimeoutMillis);
+            stats.put(c, new CallStats());
+        }
+    }
+
+    MatlabEngine engine() {
+        return engine;
+    }
+
+    /**
+     * 呼び出し種別の期限を設定する。
+     * @param timeoutMillis ミリ秒（1 以上）
+     */
+    synchronized void setTimeoutMillis(Call call, long timeoutMillis) {
+        if (timeoutMillis > 0) timeouts.put(call, timeoutMillis);
+    }
+
+    synchronized long timeoutMillis(Call call) {
+        return timeouts.get(call);
+    }
+
+    /**
+     * traceSize 行の trace を扱う呼び出しの期限（行数に応じて延長したもの）。
+     */
+    long timeoutMillis(Call call, int traceSize) {
+        return timeoutMillis(call) + call.millisPer1000Rows * Math.max(0, traceSize) / 1000L;
+    }
+
+    /**
+     * 期限付きで MATLAB コマンドを実行する。
+     * @throws TimeoutException 期限までに完了しなかった（実行は cancel 済み）
+     * @throws CircuitOpenException ブレーカーが開いている
+     * @throws ExecutionException MATLAB 側でエラーが発生した
+     */
+    void eval(Call call, String command) throws Exception {
+        eval(call, command, 0);
+    }
+
+    /**
+     * 期限付きで MATLAB コマンドを実行する。
+     * @param traceSize コマンドが扱う trace の行数（期限の延長に使う）
+     */
+    void eval(Call call, String command, int traceSize) throws Exception {
+        await(call, traceSize, () -> engine.evalAsync(command));
+    }
+
+    /**
+     * 期限付きでワークスペース変数を取得する。
+     */
+    <T> T getVariable(Call call, String name) throws Exception {
+        return await(call, 0, () -> engine.<T>getVariableAsync(name));
+    }
+
+    /**
+     * 期限付きでワークスペース変数を設定する（数値配列を文字列にせず渡す）。
+     */
+    <T> void putVariable(Call call, String name, T value) throws Exception {
+        await(call, 0, () -> engine.putVariableAsync(name, value));
+    }
+
+    /**
+     * ブレーカーが許可した場合のみ issue で呼び出しを発行し、期限まで完了を待つ。
+     */
+    private <T> T await(Call call, int traceSize, Supplier<Future<T>> issue) throws Exception {
+        if (!permit()) {
+            throw new CircuitOpenException("MATLAB circuit breaker is open; skipped " + call.key() + " call");
+        }
+        long timeout = timeoutMillis(call, traceSize);
+        CallStats s = stats.get(call);
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = issue.get();
+        } catch (RuntimeException e) {
+            s.failures.incrementAndGet();
+            onFailure(call, String.valueOf(e));
+            throw e;
+        }
+        try {
+            T result = future.get(timeout, TimeUnit.MILLISECONDS);
+            s.latency.record(System.nanoTime() - start);
+            onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            // 実行中の MATLAB 文の中断を試みる（中断できなくても呼び出し元には戻る）
+            future.cancel(true);
+            s.latency.record(System.nanoTime() - start);
+            s.timeouts.incrementAndGet();
+            onFailure(call, "timed out after " + timeout + " ms");
+            TimeoutException te = new TimeoutException("MATLAB " + call.key() + " call timed out after " + timeout + " ms");
+            te.initCause(e);
+            throw te;
+        } catch (ExecutionException e) {
+            s.latency.record(System.nanoTime() - start);
+            if (isScriptError(e)) {
+                // エンジンは応答している（STL 式の誤りなど）。ブレーカーには成功として扱う
+                s.errors.incrementAndGet();
+                onSuccess();
+            } else {
+                s.failures.incrementAndGet();
+                onFailure(call, String.valueOf(e.getCause()));
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            releaseTrial();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * MATLAB スクリプトの実行エラー・構文エラーか（エンジンの停止・切断などは含まない）。
+     */
+    private static boolean isScriptError(ExecutionException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MatlabExecutionException || t instanceof MatlabSyntaxException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * ブレーカーが呼び出しを許可しているか。開いてから cooldownMillis 経過していれば半開に移り、
+     * その呼び出しだけを試行として許可する（試行の結果が出るまで他の呼び出しは許可しない）。
+     */
+    synchronized boolean permit() {
+        if (state == State.HALF_OPEN) {
+            rejected++;
+            return false;
+        }
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAtMillis < cooldownMillis) {
+                rejected++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            logger.info("MATLAB circuit breaker half-open; trying a call.");
+        }
+        return true;
+    }
+
+    /**
+     * 呼び出しを発行せずにブレーカーの状態だけを確認する（呼び出しを省略する判断に使う）。
+     * 試行呼び出しの結果待ち（半開）の間も開いているとみなす。
+     */
+    synchronized boolean isOpen() {
+        return state == State.HALF_OPEN
+                || (state == State.OPEN && System.currentTimeMillis() - openedAtMillis < cooldownMillis);
+    }
+
+    /**
+     * 試行呼び出しが結果を出さずに終わった（割り込み）場合、次の呼び出しを試行として許可する。
+     */
+    private synchronized void releaseTrial() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAtMillis = System.currentTimeMillis() - cooldownMillis;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("MATLAB circuit breaker closed; engine is responding again.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        failedTrials = 0;
+    }
+
+    private synchronized void onFailure(Call call, String reason) {
+        consecutiveFailures++;
+        lastFailure = call.key() + " " + reason;
+        long now = System.currentTimeMillis();
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAtMillis = now;
+            failedTrials++;
+            if (failedTrials % STUCK_WARNING_TRIALS == 0) {
+                logger.warning(String.format("MATLAB circuit breaker has stayed open for %d ms across %d failed trial calls "
+                        + "(last: %s); MATLAB results are not being updated", now - openSinceMillis, failedTrials, lastFailure));
+            } else {
+                logger.fine(String.format("MATLAB circuit breaker reopened after a failed trial call (last: %s)", lastFailure));
+            }
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtMillis = now;
+            openSinceMillis = now;
+            opened++;
+            logger.warning(String.format("MATLAB circuit breaker opened after %d consecutive failures (last: %s); "
+                    + "skipping MATLAB calls for %d ms", consecutiveFailures, lastFailure, cooldownMillis));
+        }
+    }
+
+    /**
+     * 呼び出されなかった回数（ブレーカーが開いていたため）をまとめて加算する。
+     */
+    synchronized void recordRejected(long n) {
+        rejected += n;
+    }
+
+    long timeouts() {
+        long n = 0;
+        for (CallStats s : stats.values()) n += s.timeouts.get();
+        return n;
+    }
+
+    /**
+     * ブレーカーの状態と呼び出し種別ごとのレイテンシ・期限切れ回数の JSON。
+     */
+    String toJson() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            sb.append("{\"breaker\":\"").append(state.name().toLowerCase(Locale.ROOT)).append('"')
+              .append(",\"consecutiveFailures\":").append(consecutiveFailures)
+              .append(",\"opened\":").append(opened)
+              .append(",\"rejected\":").append(rejected)
+              .append(",\"failedTrials\":").append(failedTrials)
+              .append(",\"stuck\":").append(failedTrials >= STUCK_WARNING_TRIALS)
+              .append(",\"openForMs\":").append(state == State.CLOSED ? 0L : System.currentTimeMillis() - openSinceMillis)
+              .append(",\"lastFailure\":")
+              .append(lastFailure == null ? "null" : "\"" + MonitoringHttpServer.jsonEscape(lastFailure) + "\"");
+        }
+        sb.append(",\"timeouts\":").append(timeouts()).append(",\"calls\":{");
+        int i = 0;
+        for (Call c : Call.values()) {
+            CallStats s = stats.get(c);
+            if (i++ > 0) sb.append(',');
+            sb.append('"').append(c.key()).append("\":{\"timeoutMs\":").append(timeoutMillis(c))
+              .append(",\"msPer1000Rows\":").append(c.millisPer1000Rows)
+              .append(",\"timeouts\":").append(s.timeouts.get())
+              .append(",\"failures\":").append(s.failures.get())
+              .append(",\"errors\":").append(s.errors.get())
+              .append(",\"latency\":").append(s.latency.toJson()).append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            sb.append("breaker=").append(state.name().toLowerCase(Locale.ROOT)).append(", rejected=").append(rejected);
+        }
+        for (Call c : Call.values()) {
+            CallStats s = stats.get(c);
+            if (s.latency.count() == 0) continue;
+            sb.append("; ").append(c.key()).append(": ").append(s.latency)
+              .append(", timeouts=").append(s.timeouts.get());
+        }
+        return sb.toString();
+    }
+
+    private static final class CallStats {
+        final LatencyRecorder latency = new LatencyRecorder();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        /** MATLAB スクリプトのエラー（ブレーカーには数えない） */
+        final AtomicLong errors = new AtomicLong();
+    }
+}
@@ -0,0 +1,52 @@
+package org.CauMon;
+
+import java.util.Arrays;
+
+/**
+ * stl_causation_opt の結果（up_optCau / low_optCau）を保持するキャッシュ。
+ * stl_causation_opt はオンライン型の MEX で、インデックス i の値は trace の先頭 0..i の
+ * サンプルだけから決まる。履歴は追記のみなので、一度計算した先頭区間の値は確定しており
+ * 再計算する必要がない。キャッシュがカバーしている長さ以上の要求があった場合のみ再計算する。
+ */
+final class CausationCache {
+
+    private double[] up = new double[0];
+    private double[] low = new double[0];
+
+    /**
+     * キャッシュ済み（確定済み）の時間ステップ数を返す。
+     */
+    synchronized int coveredLength() {
+        return up.length;
+    }
+
+    /**
+     * traceSize 個の時間ステップまでの結果がキャッシュ済みかどうか。
+     */
+    synchronized boolean covers(int traceSize) {
+        return up.length >= traceSize;
+    }
+
+    /**
+     * MATLAB から取得した結果でキャッシュを更新する。既存より短い結果は無視する。
+     */
+    synchronized void update(double[] newUp, double[] newLow) {
+        if (newUp == null || newLow == null) return;
+        int n = Math.min(newUp.length, newLow.length);
+        if (n <= up.length) return;
+        up = Arrays.copyOf(newUp, n);
+        low = Arrays.copyOf(newLow, n);
+    }
+
+    /**
+     * キャッシュの複製を返す。[0] が up_optCau、[1] が low_optCau。
+     */
+    synchronized double[][] snapshot() {
+        return new double[][] { up.clone(), low.clone() };
+    }
+
+    synchronized void clear() {
+        up = new double[0];
+        low = new double[0];
+    }
+}
@@ -0,0 +1,608 @@
+package org.CauMon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * クラスタのコーディネーター。{@link MonitoringHttpServer} のエンドポイントを引き受け、
+ * セッションを登録ノードに配置して /start, /stop, /status 等を所有ノードへ転送する。
+ * エンドポイント:
+ * - POST /cluster/heartbeat -> ノードの登録・生存通知 (nodeId, url, sessions)
+ * - POST /cluster/leave     -> ノードの離脱通知 (nodeId)
+ * - GET  /cluster           -> ノードとセッション配置の一覧
+ * - POST /start, /stop, GET /status, /causation, /events -> 所有ノードへ転送
+ * ハートビートが途絶えたノードのセッションは、残りのノードへ再配置（再起動）する。
+ * 除外後に復帰したノードが再配置済みのセッションを動かし続けている場合は、ハートビートのセッションIDと
+ * 所有ノードを照合して、そのノード上の古いコピーを停止する。
+ * 稼働中のセッションはノード追加時には移動しない（計測中のトレースを失わないため）。
+ * セッションの TCP ポートは、要求で指定されなければ sessionPorts の範囲からクラスタ全体で重複しないように割り当てる
+ * （同じマシン上の複数ノードでも衝突しない。再配置後も同じポートを使う）。
+ */
+public final class ClusterCoordinator {
+
+    private static final Logger logger = Logger.getLogger(ClusterCoordinator.class.getName());
+    static final long NODE_TIMEOUT_MILLIS = 3 * ClusterNodeAgent.HEARTBEAT_INTERVAL_MILLIS;
+    private static final int VIRTUAL_NODES = 64;
+    static final int DEFAULT_FIRST_SESSION_PORT = 20000;
+    static final int DEFAULT_LAST_SESSION_PORT = 20999;
+
+    /**
+     * セッション配置方式
+     */
+    public enum Placement {
+        /** セッションIDのコンシステントハッシュ */
+        HASH,
+        /** 稼働セッション数が最小のノード */
+        LEAST_LOAD;
+
+        public static Placement fromString(String s) {
+            if (s != null && (s.equalsIgnoreCase("least-load") || s.equalsIgnoreCase("least_load"))) {
+                return LEAST_LOAD;
+            }
+            return HASH;
+        }
+    }
+
+    private static final class NodeInfo {
+        final String id;
+        volatile String url;
+        volatile int reportedSessions;
+        volatile long lastSeenMillis;
+
+        NodeInfo(String id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+    }
+
+    private static final class SessionInfo {
+        final String id;
+        final String signals;
+        final String phi;
+        final String sink;
+        final String ack;
+        final String evalTimeoutMs;
+        final String export;
+        final String renderWorker;
+        final int port;
+        volatile String owner;
+        // 再配置の /start を送信中（次の sweep で重複して再配置しないため）
+        final AtomicBoolean rebalancing = new AtomicBoolean(false);
+
+        SessionInfo(String id, String signals, String phi, String sink, String ack, String evalTimeoutMs, String export,
+                    String renderWorker, int port) {
+            this.id = id;
+            this.signals = signals;
+            this.phi = phi;
+            this.sink = sink;
+            this.ack = ack;
+            this.evalTimeoutMs = evalTimeoutMs;
+            this.export = export;
+            this.renderWorker = renderWorker;
+            this.port = port;
+        }
+
+        String startBody() {
+            StringBuilder sb = new StringBuilder("{");
+            sb.append("\"session\":\"").append(MonitoringHttpServer.jsonEscape(id)).append('"');
+            if (signals != null) sb.append(",\"signals\":\"").append(MonitoringHttpServer.jsonEscape(signals)).append('"');
+            if (phi != null) sb.append(",\"phi\":\"").append(MonitoringHttpServer.jsonEscape(phi)).append('"');
+            if (sink != null) sb.append(",\"sink\":\"").append(MonitoringHttpServer.jsonEscape(sink)).append('"');
+            if (ack != null) sb.append(",\"ack\":").append(Boolean.parseBoolean(ack));
+            if (export != null) sb.append(",\"export\":\"").append(MonitoringHttpServer.jsonEscape(export)).append('"');
+            if (renderWorker != null) sb.append(",\"renderWorker\":").append(Boolean.parseBoolean(renderWorker));
+            if (evalTimeoutMs != null) sb.append(",\"evalTimeoutMs\":\"").append(MonitoringHttpServer.jsonEscape(evalTimeoutMs)).append('"');
+            sb.append(",\"port\":").append(port).append('}');
+            return sb.toString();
+        }
+    }
+
+    private final Placement placement;
+    private final int firstSessionPort;
+    private final int lastSessionPort;
+    // 割り当て済みの TCP ポート -> セッションID
+    private final Map<Integer, String> portOwners = new HashMap<>();
+    private final Map<String, NodeInfo> nodes = new ConcurrentHashMap<>();
+    private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+    private final ConsistentHashRing ring = new ConsistentHashRing(VIRTUAL_NODES);
+    // 停止要求中の古いコピー（ノードID + "\n" + セッションID）。ハートビートごとに重複して停止しないため
+    private final Set<String> pendingStops = ConcurrentHashMap.newKeySet();
+    private final ClusterStatusHandler clusterStatus = new ClusterStatusHandler();
+    private ScheduledExecutorService sweeper;
+    // 再配置の /start と古いコピーの /stop を送るスレッド。ノードの MATLAB 起動を待つ間も sweep（期限切れの検出）を止めない
+    private ExecutorService nodeCalls;
+
+    public ClusterCoordinator(Placement placement) {
+        this(placement, DEFAULT_FIRST_SESSION_PORT, DEFAULT_LAST_SESSION_PORT);
+    }
+
+    /**
+     * @param firstSessionPort セッションに割り当てる TCP ポートの範囲の先頭
+     * @param lastSessionPort 同じく末尾（含む）
+     */
+    public ClusterCoordinator(Placement placement, int firstSessionPort, int lastSessionPort) {
+        if (firstSessionPort <= 0 || lastSessionPort > 65535 || firstSessionPort > lastSessionPort) {
+            throw new IllegalArgumentException("Invalid session port range: " + firstSessionPort + "-" + lastSessionPort);
+        }
+        this.placement = placement != null ? placement : Placement.HASH;
+        this.firstSessionPort = firstSessionPort;
+        this.lastSessionPort = lastSessionPort;
+    }
+
+    /**
+     * HTTPサーバーにコーディネーター用のハンドラーを登録し、ノード監視を開始する。
+     */
+    void install(HttpServer httpServer) {
+        httpServer.createContext("/cluster/heartbeat", new HeartbeatHandler());
+        httpServer.createContext("/cluster/leave", new LeaveHandler());
+        httpServer.createContext("/cluster", clusterStatus);
+        httpServer.createContext("/start", new StartHandler());
+        httpServer.createContext("/stop", new StopHandler());
+        httpServer.createContext("/status", new ForwardGetHandler("/status"));
+        httpServer.createContext("/causation", new ForwardGetHandler("/causation"));
+        httpServer.createContext("/events", new ForwardGetHandler("/events"));
+
+        nodeCalls = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ClusterCoordinator-NodeCall");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ClusterCoordinator-Sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, NODE_TIMEOUT_MILLIS, ClusterNodeAgent.HEARTBEAT_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        logger.info("Cluster coordinator enabled (placement=" + placement + ", session ports "
+                + firstSessionPort + "-" + lastSessionPort + ")");
+    }
+
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        if (nodeCalls != null) {
+            nodeCalls.shutdownNow();
+            nodeCalls = null;
+        }
+    }
+
+    // ===== ノード管理 =====
+
+    /**
+     * @param runningSessions ノードで稼働中のセッションID（古いノードで報告が無ければ null）
+     */
+    private void onHeartbeat(String nodeId, String url, int reportedSessions, List<String> runningSessions) {
+        NodeInfo node = nodes.computeIfAbsent(nodeId, id -> {
+            logger.info("Node joined: " + id + " (" + url + ")");
+            ring.addNode(id);
+            return new NodeInfo(id, url);
+        });
+        node.url = url;
+        node.reportedSessions = reportedSessions;
+        node.lastSeenMillis = System.currentTimeMillis();
+        if (runningSessions != null) {
+            reconcile(node, runningSessions);
+        }
+    }
+
+    /**
+     * ノードが報告した稼働中セッションを所有ノードと照合する。
+     * 他のノードが所有しているセッション（除外中に再配置されたもの）はこのノード上のコピーを停止し、
+     * 所有ノードが無い（再配置待ちの）セッションはこのノードの所有とする。
+     */
+    private void reconcile(NodeInfo node, List<String> runningSessions) {
+        for (String sessionId : runningSessions) {
+            SessionInfo session = sessions.get(sessionId);
+            if (session == null) continue; // コーディネーター経由で起動されていないセッションには関与しない
+            String owner = session.owner;
+            if (owner == null) {
+                session.owner = node.id;
+                logger.info("Session " + sessionId + " is still running on " + node.id + "; keeping it there");
+            } else if (!owner.equals(node.id)) {
+                stopStaleCopy(node, sessionId, owner);
+            }
+        }
+    }
+
+    private void stopStaleCopy(NodeInfo node, String sessionId, String owner) {
+        String key = node.id + "\n" + sessionId;
+        ExecutorService executor = nodeCalls;
+        if (executor == null || !pendingStops.add(key)) return;
+        logger.warning("Session " + sessionId + " is owned by " + owner + " but still runs on " + node.id
+                + "; stopping the stale copy");
+        execute(executor, () -> pendingStops.remove(key), () -> {
+            try {
+                ClusterHttp.Response r = ClusterHttp.post(node.url + "/stop",
+                        "{\"session\":\"" + MonitoringHttpServer.jsonEscape(sessionId) + "\"}");
+                if (r.status / 100 != 2) {
+                    logger.warning("Stopping stale session " + sessionId + " on " + node.id + " failed: " + r.body);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Stopping stale session " + sessionId + " on " + node.id + " failed", e);
+            } finally {
+                pendingStops.remove(key);
+            }
+        });
+    }
+
+    private void removeNode(String nodeId, String reason) {
+        if (nodes.remove(nodeId) != null) {
+            ring.removeNode(nodeId);
+            logger.warning("Node removed: " + nodeId + " (" + reason + ")");
+        }
+    }
+
+    /**
+     * ノードへの呼び出しを nodeCalls で実行する。受け付けられなかった場合（停止中）は onRejected を呼ぶ。
+     */
+    private static void execute(ExecutorService executor, Runnable onRejected, Runnable call) {
+        try {
+            executor.execute(call);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
+        }
+    }
+
+    /**
+     * 期限切れノードを除外し、所有ノードを失ったセッションの再配置を nodeCalls に依頼する
+     * （再配置中のセッションは重複して依頼しない）。
+     */
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            for (NodeInfo node : new ArrayList<>(nodes.values())) {
+                if (now - node.lastSeenMillis > NODE_TIMEOUT_MILLIS) {
+                    removeNode(node.id, "heartbeat timeout");
+                }
+            }
+            for (SessionInfo session : sessions.values()) {
+                String owner = session.owner;
+                if ((owner == null || !nodes.containsKey(owner)) && session.rebalancing.compareAndSet(false, true)) {
+                    ExecutorService executor = nodeCalls;
+                    if (executor == null) {
+                        session.rebalancing.set(false);
+                        continue;
+                    }
+                    execute(executor, () -> session.rebalancing.set(false), () -> {
+                        try {
+                            rebalance(session);
+                        } finally {
+                            session.rebalancing.set(false);
+                        }
+                    });
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cluster sweep failed", e);
+        }
+    }
+
+    private void rebalance(SessionInfo session) {
+        String previous = session.owner;
+        session.owner = null;
+        NodeInfo target = choose(session.id);
+        if (target == null) {
+            logger.warning("No node available to rebalance session " + session.id);
+            return;
+        }
+        try {
+            ClusterHttp.Response r = ClusterHttp.post(target.url + "/start", session.startBody());
+            if (r.status / 100 == 2) {
+                session.owner = target.id;
+                logger.info("Session " + session.id + " moved from " + previous + " to " + target.id);
+            } else {
+                logger.warning("Rebalance of session " + session.id + " to " + target.id + " failed: " + r.body);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Rebalance of session " + session.id + " to " + target.id + " failed", e);
+        }
+    }
+
+    /**
+     * 配置方式に従ってセッションの配置先ノードを選ぶ（ノードが無ければ null）。
+     */
+    private NodeInfo choose(String sessionId) {
+        if (nodes.isEmpty()) return null;
+        if (placement == Placement.HASH) {
+            String id = ring.nodeFor(sessionId);
+            return id != null ? nodes.get(id) : null;
+        }
+        Map<String, Integer> assigned = new HashMap<>();
+        for (SessionInfo s : sessions.values()) {
+            if (s.owner != null) assigned.merge(s.owner, 1, Integer::sum);
+        }
+        return nodes.values().stream()
+                .min(Comparator.<NodeInfo>comparingInt(n -> Math.max(n.reportedSessions, assigned.getOrDefault(n.id, 0)))
+                        .thenComparing(n -> n.id))
+                .orElse(null);
+    }
+
+    /**
+     * セッションの TCP ポートを決める。同じセッションの再起動なら同じポート、指定があればそれを（他のセッションが
+     * 使用中なら -1）、無ければ範囲内の空きポートを割り当てる（空きが無ければ -1）。
+     */
+    private synchronized int allocatePort(String sessionId, String requested) {
+        SessionInfo existing = sessions.get(sessionId);
+        if (existing != null && requested == null) return existing.port;
+        if (requested != null) {
+            int port;
+            try {
+                port = Integer.parseInt(requested);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            String owner = portOwners.get(port);
+            if (owner != null && !owner.equals(sessionId)) return -1;
+            portOwners.put(port, sessionId);
+            return port;
+        }
+        for (int port = firstSessionPort; port <= lastSessionPort; port++) {
+            if (!portOwners.containsKey(port)) {
+                portOwners.put(port, sessionId);
+                return port;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized void releasePort(int port, String sessionId) {
+        portOwners.remove(port, sessionId);
+    }
+
+    private NodeInfo ownerOf(String sessionId) {
+        SessionInfo session = sessions.get(sessionId);
+        if (session == null || session.owner == null) return null;
+        return nodes.get(session.owner);
+    }
+
+    // ===== ハンドラー =====
+
+    private class HeartbeatHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String body = readBody(exchange);
+            String nodeId = MonitoringHttpServer.extractJsonValue(body, "nodeId");
+            String url = MonitoringHttpServer.extractJsonValue(body, "url");
+            if (nodeId == null || url == null) {
+                MonitoringHttpServer.sendResponse(exchange, 400, "text/plain; charset=utf-8", "nodeId and url are required");
+                return;
+            }
+            int reported = 0;
+            try {
+                String n = MonitoringHttpServer.extractJsonValue(body, "sessions");
+                if (n != null) reported = Integer.parseInt(n);
+            } catch (NumberFormatException ignored) {}
+            onHeartbeat(nodeId, url, reported,
+                    parseSessionIds(MonitoringHttpServer.extractJsonValue(body, "sessionIds")));
+            MonitoringHttpServer.sendResponse(exchange, 200, "text/plain; charset=utf-8", "ok");
+        }
+    }
+
+    private class LeaveHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String nodeId = MonitoringHttpServer.extractJsonValue(readBody(exchange), "nodeId");
+            if (nodeId != null) {
+                removeNode(nodeId, "left");
+            }
+            MonitoringHttpServer.sendResponse(exchange, 200, "text/plain; charset=utf-8", "ok");
+        }
+    }
+
+    private class ClusterStatusHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            StringBuilder sb = new StringBuilder("{\"placement\":\"").append(placement).append("\",\"nodes\":[");
+            int i = 0;
+            for (NodeInfo n : nodes.values()) {
+                if (i++ > 0) sb.append(',');
+                sb.append("{\"nodeId\":\"").append(MonitoringHttpServer.jsonEscape(n.id))
+                  .append("\",\"url\":\"").append(MonitoringHttpServer.jsonEscape(n.url))
+                  .append("\",\"sessions\":").append(n.reportedSessions)
+                  .append(",\"lastSeenMillisAgo\":").append(now - n.lastSeenMillis).append('}');
+            }
+            sb.append("],\"sessions\":[");
+            i = 0;
+            for (SessionInfo s : sessions.values()) {
+                if (i++ > 0) sb.append(',');
+                sb.append("{\"session\":\"").append(MonitoringHttpServer.jsonEscape(s.id))
+                  .append("\",\"owner\":").append(s.owner != null ? "\"" + MonitoringHttpServer.jsonEscape(s.owner) + "\"" : "null")
+                  .append(",\"port\":").append(s.port).append('}');
+            }
+            sb.append("]}");
+            MonitoringHttpServer.sendResponse(exchange, 200, "application/json; charset=utf-8", sb.toString());
+        }
+    }
+
+    private class StartHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String body = readBody(exchange);
+            String sessionId = sessionOrDefault(MonitoringHttpServer.extractJsonValue(body, "session"));
+            String requestedPort = MonitoringHttpServer.extractJsonValue(body, "port");
+            SessionInfo existing = sessions.get(sessionId);
+            int previousPort = existing != null ? existing.port : -1;
+            int port = allocatePort(sessionId, requestedPort);
+            if (port < 0) {
+                MonitoringHttpServer.sendResponse(exchange, 409, "text/plain; charset=utf-8",
+                        "サーバー起動に失敗しました: " + (requestedPort != null
+                                ? "TCPポート " + requestedPort + " は他のセッションが使用中です"
+                                : "割り当て可能なTCPポートがありません (" + firstSessionPort + "-" + lastSessionPort + ")"));
+                return;
+            }
+            SessionInfo session = new SessionInfo(sessionId,
+                    MonitoringHttpServer.extractJsonValue(body, "signals"),
+                    MonitoringHttpServer.extractJsonValue(body, "phi"),
+                    MonitoringHttpServer.extractJsonValue(body, "sink"),
+                    MonitoringHttpServer.extractJsonValue(body, "ack"),
+                    MonitoringHttpServer.extractJsonValue(body, "evalTimeoutMs"),
+                    MonitoringHttpServer.extractJsonValue(body, "export"),
+                    MonitoringHttpServer.extractJsonValue(body, "renderWorker"),
+                    port);
+
+            // 既に所有ノードがあればそこへ、無ければ配置方式に従って選ぶ
+            NodeInfo target = ownerOf(sessionId);
+            if (target == null) target = choose(sessionId);
+            if (target == null) {
+                if (port != previousPort) releasePort(port, sessionId);
+                MonitoringHttpServer.sendResponse(exchange, 503, "text/plain; charset=utf-8",
+                        "サーバー起動に失敗しました: 利用可能なノードがありません");
+                return;
+            }
+            ClusterHttp.Response r;
+            try {
+                r = ClusterHttp.post(target.url + "/start", session.startBody());
+            } catch (IOException e) {
+                if (port != previousPort) releasePort(port, sessionId);
+                MonitoringHttpServer.sendResponse(exchange, 502, "text/plain; charset=utf-8",
+                        "サーバー起動に失敗しました: ノード " + target.id + " に接続できません (" + e.getMessage() + ")");
+                return;
+            }
+            if (r.status / 100 == 2) {
+                session.owner = target.id;
+                SessionInfo previous = sessions.put(sessionId, session);
+                if (previous != null && previous.port != port) releasePort(previous.port, sessionId);
+            } else if (port != previousPort) {
+                releasePort(port, sessionId);
+            }
+            MonitoringHttpServer.sendResponse(exchange, r.status, r.contentType,
+                    r.body + (MonitoringHttpServer.DEFAULT_SESSION.equals(sessionId) ? "\nセッション: " + sessionId : "")
+                            + "\n配置ノード: " + target.url);
+        }
+    }
+
+    private class StopHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String body = readBody(exchange);
+            String sessionId = sessionOrDefault(MonitoringHttpServer.extractJsonValue(body, "session"));
+            NodeInfo owner = ownerOf(sessionId);
+            SessionInfo removed = sessions.remove(sessionId);
+            if (removed != null) releasePort(removed.port, sessionId);
+            if (owner == null) {
+                MonitoringHttpServer.sendResponse(exchange, 404, "text/plain; charset=utf-8",
+                        "セッションが見つかりません: " + sessionId);
+                return;
+            }
+            try {
+                ClusterHttp.Response r = ClusterHttp.post(owner.url + "/stop",
+                        "{\"session\":\"" + MonitoringHttpServer.jsonEscape(sessionId) + "\"}");
+                MonitoringHttpServer.sendResponse(exchange, r.status, r.contentType, r.body);
+            } catch (IOException e) {
+                MonitoringHttpServer.sendResponse(exchange, 502, "text/plain; charset=utf-8",
+                        "ノード " + owner.id + " に接続できません: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * GET 要求を ?session= の所有ノードへそのまま転送する。
+     */
+    private class ForwardGetHandler implements HttpHandler {
+        private final String path;
+
+        ForwardGetHandler(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String sessionId = MonitoringHttpServer.queryParam(exchange.getRequestURI(), "session");
+            if ((sessionId == null || sessionId.isEmpty()) && "/status".equals(path)) {
+                // セッション指定のない /status はクラスタ全体の状態を返す
+                clusterStatus.handle(exchange);
+                return;
+            }
+            sessionId = sessionOrDefault(sessionId);
+            NodeInfo owner = ownerOf(sessionId);
+            if (owner == null) {
+                MonitoringHttpServer.sendResponse(exchange, 404, "application/json; charset=utf-8",
+                        "{\"error\":\"No such session: " + MonitoringHttpServer.jsonEscape(sessionId) + "\"}");
+                return;
+            }
+            try {
+                ClusterHttp.Response r = ClusterHttp.get(owner.url + path + "?session="
+                        + URLEncoder.encode(sessionId, StandardCharsets.UTF_8));
+                MonitoringHttpServer.sendResponse(exchange, r.status, r.contentType, r.body);
+            } catch (IOException e) {
+                MonitoringHttpServer.sendResponse(exchange, 502, "application/json; charset=utf-8",
+                        "{\"error\":\"Node " + MonitoringHttpServer.jsonEscape(owner.id) + " unreachable\"}");
+            }
+        }
+    }
+
+    /**
+     * {@link ClusterNodeAgent#encodeSessionIds} の逆変換（値が無ければ null）。
+     */
+    private static List<String> parseSessionIds(String encoded) {
+        if (encoded == null) return null;
+        List<String> ids = new ArrayList<>();
+        for (String part : encoded.split(",")) {
+            if (!part.isEmpty()) ids.add(URLDecoder.decode(part, StandardCharsets.UTF_8));
+        }
+        return ids;
+    }
+
+    /**
+     * セッション指定が無い要求は、単体モードと同じく既定のセッションとして扱う（/start, /stop, GET で共通）。
+     */
+    private static String sessionOrDefault(String sessionId) {
+        return (sessionId == null || sessionId.isEmpty()) ? MonitoringHttpServer.DEFAULT_SESSION : sessionId;
+    }
+
+    private static String readBody(HttpExchange exchange) {
+        return new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
+                .lines().collect(Collectors.joining("\n"));
+    }
+}
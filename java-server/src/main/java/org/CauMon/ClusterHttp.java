@@ -0,0 +1,78 @@
+package org.CauMon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * クラスタ内のノード間 HTTP 呼び出し（コーディネーターからの転送、ノードのハートビート）用の簡易クライアント。
+ */
+final class ClusterHttp {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    // /start はノード側で MATLAB 起動を待つため長めにとる
+    private static final int READ_TIMEOUT_MILLIS = 180_000;
+
+    private ClusterHttp() {}
+
+    /**
+     * HTTP 応答（ステータスコードと本文）
+     */
+    static final class Response {
+        final int status;
+        final String body;
+        final String contentType;
+
+        Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    static Response post(String url, String jsonBody) throws IOException {
+        return send("POST", url, jsonBody);
+    }
+
+    static Response get(String url) throws IOException {
+        return send("GET", url, null);
+    }
+
+    private static Response send(String method, String url, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+            conn.setRequestMethod(method);
+            if (body != null) {
+                byte[] out = body.getBytes(StandardCharsets.UTF_8);
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                conn.setFixedLengthStreamingMode(out.length);
+                try (OutputStream os = conn.getOutputStream()) {
+                    os.write(out);
+                }
+            }
+            int status = conn.getResponseCode();
+            InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            String text = "";
+            if (in != null) {
+                try (InputStream is = in) {
+                    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                    byte[] chunk = new byte[4096];
+                    int n;
+                    while ((n = is.read(chunk)) > 0) buf.write(chunk, 0, n);
+                    text = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+            String type = conn.getContentType();
+            return new Response(status, text, type != null ? type : "text/plain; charset=utf-8");
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
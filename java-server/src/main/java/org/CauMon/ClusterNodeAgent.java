@@ -0,0 +1,104 @@
+package org.CauMon;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ノード側のクラスタ参加処理。コーディネーターへ定期的にハートビート（登録を兼ねる）を送る。
+ * ハートビートが途絶えたノードはコーディネーターにより離脱とみなされ、セッションが再配置される。
+ * ハートビートには稼働中のセッションIDを含め、コーディネーターが所有ノードと照合できるようにする。
+ */
+final class ClusterNodeAgent {
+
+    private static final Logger logger = Logger.getLogger(ClusterNodeAgent.class.getName());
+    static final long HEARTBEAT_INTERVAL_MILLIS = 2000L;
+
+    private final String coordinatorUrl;
+    private final String nodeId;
+    private final String advertiseUrl;
+    private final Supplier<List<String>> runningSessions;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean registered = false;
+
+    /**
+     * @param coordinatorUrl コーディネーターのベースURL (例: "http://localhost:8080")
+     * @param nodeId ノードID
+     * @param advertiseUrl コーディネーターから到達可能なこのノードのベースURL
+     * @param runningSessions 現在稼働中のセッションID（数は least-load 配置に、ID は所有ノードとの照合に使用）
+     */
+    ClusterNodeAgent(String coordinatorUrl, String nodeId, String advertiseUrl, Supplier<List<String>> runningSessions) {
+        this.coordinatorUrl = stripTrailingSlash(coordinatorUrl);
+        this.nodeId = nodeId;
+        this.advertiseUrl = stripTrailingSlash(advertiseUrl);
+        this.runningSessions = runningSessions;
+    }
+
+    synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ClusterNode-Heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        logger.info("Joining cluster at " + coordinatorUrl + " as " + nodeId + " (" + advertiseUrl + ")");
+    }
+
+    /**
+     * ハートビートを停止し、コーディネーターへ離脱を通知する。
+     */
+    synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        try {
+            ClusterHttp.post(coordinatorUrl + "/cluster/leave", "{\"nodeId\":\"" + nodeId + "\"}");
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to notify coordinator of leave", e);
+        }
+    }
+
+    private void heartbeat() {
+        List<String> ids = runningSessions.get();
+        String body = "{\"nodeId\":\"" + nodeId + "\",\"url\":\"" + advertiseUrl
+                + "\",\"sessions\":" + ids.size() + ",\"sessionIds\":\"" + encodeSessionIds(ids) + "\"}";
+        try {
+            ClusterHttp.Response r = ClusterHttp.post(coordinatorUrl + "/cluster/heartbeat", body);
+            if (r.status != 200) {
+                logger.warning("Coordinator rejected heartbeat: " + r.status + " " + r.body);
+            } else if (!registered) {
+                registered = true;
+                logger.info("Registered with coordinator " + coordinatorUrl);
+            }
+        } catch (IOException e) {
+            if (registered) {
+                logger.log(Level.WARNING, "Heartbeat to coordinator failed", e);
+            }
+            registered = false;
+        }
+    }
+
+    /**
+     * セッションIDを URL エンコードしてカンマで連結する（簡易 JSON パーサーで1つの文字列値として読めるように）。
+     */
+    static String encodeSessionIds(List<String> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (String id : ids) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(URLEncoder.encode(id, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
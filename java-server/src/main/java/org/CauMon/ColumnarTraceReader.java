@@ -0,0 +1,284 @@
+package org.CauMon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link ColumnarTraceWriter} が書き出した .cmc ファイルを列ごとの double 配列として読み込む。
+ * ファイルをメモリマップし、各ブロックの列をまとめて配列にコピーするため、大きな記録も高速に読める。
+ * フッター（ブロックの索引）があれば索引から、無ければ（異常終了した記録）先頭から順にブロックを読む。
+ * 書き込まれていない区間のロバストネス・因果解析は NaN になる。
+ *
+ * コマンドラインからは概要の表示と CSV への変換ができる:
+ * <pre>
+ *   java -cp ... org.CauMon.ColumnarTraceReader trace.cmc [--csv=trace.csv]
+ * </pre>
+ */
+public final class ColumnarTraceReader {
+
+    private final String[] names;
+    private final double[][] columns;
+    private final double[] upRob;
+    private final double[] lowRob;
+    private final double[] upCau;
+    private final double[] lowCau;
+    private final int rows;
+    private final int robustnessRows;
+    private final int causationRows;
+    private final boolean complete;
+
+    private ColumnarTraceReader(String[] names, double[][] columns, double[][] rob, double[][] cau,
+                                int rows, int robustnessRows, int causationRows, boolean complete) {
+        this.names = names;
+        this.columns = columns;
+        this.upRob = rob[0];
+        this.lowRob = rob[1];
+        this.upCau = cau[0];
+        this.lowCau = cau[1];
+        this.rows = rows;
+        this.robustnessRows = robustnessRows;
+        this.causationRows = causationRows;
+        this.complete = complete;
+    }
+
+    /**
+     * ファイルを読み込む。
+     * @throws IOException 形式が不正な場合
+     */
+    public static ColumnarTraceReader read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("File too large (> 2 GiB): " + file);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            return parse(map, file);
+        }
+    }
+
+    private static ColumnarTraceReader parse(ByteBuffer in, Path file) throws IOException {
+        byte[] magic = new byte[ColumnarTraceWriter.MAGIC.length];
+        if (in.remaining() < magic.length + 2 * Integer.BYTES) throw new IOException("Not a .cmc file: " + file);
+        in.get(magic);
+        if (!Arrays.equals(magic, ColumnarTraceWriter.MAGIC)) throw new IOException("Not a .cmc file: " + file);
+        int version = in.getInt();
+        if (version != ColumnarTraceWriter.VERSION) throw new IOException("Unsupported .cmc version " + version);
+        int width = in.getInt();
+        String[] names = new String[width];
+        for (int c = 0; c < width; c++) {
+            byte[] b = new byte[in.getShort() & 0xffff];
+            in.get(b);
+            names[c] = new String(b, StandardCharsets.UTF_8);
+        }
+        int dataStart = in.position();
+
+        // フッターの索引があればそこから、無ければブロックを順に走査して位置を集める
+        long[][] blocks = readFooter(in);
+        boolean complete = blocks != null;
+        if (blocks == null) blocks = scanBlocks(in, dataStart, width);
+
+        int rows = 0;
+        for (long[] b : blocks) {
+            if (b[0] == ColumnarTraceWriter.BLOCK_ROWS) rows = (int) Math.max(rows, b[1] + b[2]);
+        }
+        double[][] columns = new double[width][rows];
+        double[][] rob = nanPair(rows);
+        double[][] cau = nanPair(rows);
+        int robustnessRows = 0;
+        int causationRows = 0;
+        for (long[] b : blocks) {
+            int type = (int) b[0];
+            int from = (int) b[1];
+            int count = (int) b[2];
+            int pos = (int) b[3] + ColumnarTraceWriter.BLOCK_HEADER_BYTES;
+            if (type == ColumnarTraceWriter.BLOCK_ROWS) {
+                for (int c = 0; c < width; c++) {
+                    copy(in, pos, columns[c], from, count);
+                    pos += count * Double.BYTES;
+                }
+            } else {
+                double[][] dst = (type == ColumnarTraceWriter.BLOCK_ROBUSTNESS) ? rob : cau;
+                // 行より長い区間は無視する（行ブロックが欠けた異常終了時）
+                int n = Math.max(0, Math.min(count, rows - from));
+                copy(in, pos, dst[0], from, n);
+                copy(in, pos + count * Double.BYTES, dst[1], from, n);
+                if (type == ColumnarTraceWriter.BLOCK_ROBUSTNESS) robustnessRows = Math.max(robustnessRows, from + n);
+                else causationRows = Math.max(causationRows, from + n);
+            }
+        }
+        return new ColumnarTraceReader(names, columns, rob, cau, rows, robustnessRows, causationRows, complete);
+    }
+
+    private static long[][] readFooter(ByteBuffer in) {
+        int limit = in.limit();
+        int tail = Long.BYTES + ColumnarTraceWriter.MAGIC.length;
+        if (limit < tail) return null;
+        byte[] magic = new byte[ColumnarTraceWriter.MAGIC.length];
+        in.position(limit - ColumnarTraceWriter.MAGIC.length);
+        in.get(magic);
+        if (!Arrays.equals(magic, ColumnarTraceWriter.MAGIC)) return null;
+        long footerOffset = in.getLong(limit - tail);
+        if (footerOffset < 0 || footerOffset > limit - tail) return null;
+        in.position((int) footerOffset);
+        if (in.getInt() != ColumnarTraceWriter.BLOCK_END) return null;
+        in.getLong(); // 行数（ブロックから求め直す）
+        int n = in.getInt();
+        long[][] blocks = new long[n][];
+        for (int i = 0; i < n; i++) {
+            blocks[i] = new long[] { in.getInt(), in.getLong(), in.getInt(), in.getLong() };
+        }
+        return blocks;
+    }
+
+    private static long[][] scanBlocks(ByteBuffer in, int dataStart, int width) {
+        List<long[]> blocks = new ArrayList<>();
+        int pos = dataStart;
+        int limit = in.limit();
+        while (pos + ColumnarTraceWriter.BLOCK_HEADER_BYTES <= limit) {
+            int type = in.getInt(pos);
+            if (type == ColumnarTraceWriter.BLOCK_END) break;
+            long from = in.getLong(pos + Integer.BYTES);
+            int count = in.getInt(pos + Integer.BYTES + Long.BYTES);
+            int cols = (type == ColumnarTraceWriter.BLOCK_ROWS) ? width : 2;
+            long end = pos + ColumnarTraceWriter.BLOCK_HEADER_BYTES + (long) cols * count * Double.BYTES;
+            if (type < ColumnarTraceWriter.BLOCK_ROWS || type > ColumnarTraceWriter.BLOCK_CAUSATION || count < 0 || end > limit) {
+                break; // 書きかけのブロック
+            }
+            blocks.add(new long[] { type, from, count, pos });
+            pos = (int) end;
+        }
+        return blocks.toArray(new long[0][]);
+    }
+
+    private static void copy(ByteBuffer in, int pos, double[] dst, int dstOffset, int count) {
+        if (count <= 0) return;
+        ByteBuffer view = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(pos);
+        view.asDoubleBuffer().get(dst, dstOffset, count);
+    }
+
+    private static double[][] nanPair(int rows) {
+        double[][] p = new double[2][rows];
+        Arrays.fill(p[0], Double.NaN);
+        Arrays.fill(p[1], Double.NaN);
+        return p;
+    }
+
+    /** 行数 */
+    public int rows() {
+        return rows;
+    }
+
+    /** 列名（先頭は time） */
+    public String[] columnNames() {
+        return names.clone();
+    }
+
+    /**
+     * 列の値（列 0 は time）。返す配列は共有されるため変更しないこと。
+     */
+    public double[] column(int index) {
+        return columns[index];
+    }
+
+    /**
+     * 列名で列の値を返す（無ければ null）。
+     */
+    public double[] column(String name) {
+        for (int c = 0; c < names.length; c++) {
+            if (names[c].equals(name)) return columns[c];
+        }
+        return null;
+    }
+
+    public double[] time() {
+        return columns[0];
+    }
+
+    public double[] upRobustness() {
+        return upRob;
+    }
+
+    public double[] lowRobustness() {
+        return lowRob;
+    }
+
+    public double[] upCausation() {
+        return upCau;
+    }
+
+    public double[] lowCausation() {
+        return lowCau;
+    }
+
+    /** ロバストネスが書き込まれている先頭からの行数 */
+    public int robustnessRows() {
+        return robustnessRows;
+    }
+
+    /** 因果解析の結果が書き込まれている先頭からの行数 */
+    public int causationRows() {
+        return causationRows;
+    }
+
+    /** フッターまで書き込まれている（正常に閉じられた）か */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * CSV（time, 信号..., up_rob, low_rob, up_cau, low_cau）として書き出す。
+     */
+    public void writeCsv(Path out) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write(String.join(",", names));
+            w.write(",up_rob,low_rob,up_cau,low_cau\n");
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < rows; i++) {
+                sb.setLength(0);
+                for (int c = 0; c < names.length; c++) {
+                    sb.append(columns[c][i]).append(',');
+                }
+                sb.append(upRob[i]).append(',').append(lowRob[i]).append(',')
+                  .append(upCau[i]).append(',').append(lowCau[i]).append('\n');
+                w.write(sb.toString());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "columns=%s, rows=%d, robustness=%d, causation=%d, complete=%b",
+                Arrays.toString(names), rows, robustnessRows, causationRows, complete);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ColumnarTraceReader <file.cmc> [--csv=out.csv]");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        ColumnarTraceReader r = read(Paths.get(args[0]));
+        long elapsed = System.nanoTime() - start;
+        System.out.println(r);
+        System.out.printf(Locale.ROOT, "loaded in %.1f ms%n", elapsed / 1e6);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--csv=")) {
+                Path out = Paths.get(args[i].substring("--csv=".length()));
+                r.writeCsv(out);
+                System.out.println("wrote " + out);
+            }
+        }
+    }
+}
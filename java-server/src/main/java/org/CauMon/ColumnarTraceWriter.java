@@ -0,0 +1,325 @@
+package org.CauMon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 受信履歴・ロバストネス・因果解析の結果を列指向のバイナリファイル（.cmc）に書き出す。
+ * 書き込みは専用スレッドが FileChannel と固定長のバッファで行い、評価スレッドは最新の結果を
+ * 渡すだけなので、受信・評価がディスク書き込みで止まることはない。
+ *
+ * stl_eval_mex_pw / stl_causation_opt はオンライン型で、先頭区間の値は後から変わらないため、
+ * 行（time と信号）・ロバストネス・因果解析はそれぞれ未書き込みの区間だけをブロックとして追記する。
+ * 書き込みスレッドが遅れた場合も溜めるのは「どこまで書いたか」だけで、追いついたときにまとめて書く。
+ *
+ * ファイル形式（リトルエンディアン）:
+ * <pre>
+ *   ヘッダー:   "CMC1" | int32 version | int32 列数 N（time を含む） | N × (int16 長さ + UTF-8 列名)
+ *   ブロック:   int32 種別 (1=行, 2=ロバストネス, 3=因果解析) | int64 先頭行 | int32 行数 n
+ *               | 列ごとに n × float64（行: N 列、ロバストネス・因果解析: up, low の 2 列）
+ *   フッター:   int32 0 | int64 行数 | int32 ブロック数 | ブロックごとに (int32 種別, int64 先頭行, int32 行数, int64 位置)
+ *               | int64 フッター位置 | "CMC1"
+ * </pre>
+ * フッターが無いファイル（異常終了時）はブロックを先頭から順に読めば復元できる。
+ * 読み出しは {@link ColumnarTraceReader} を使う。
+ */
+final class ColumnarTraceWriter {
+
+    private static final Logger logger = Logger.getLogger(ColumnarTraceWriter.class.getName());
+
+    static final byte[] MAGIC = { 'C', 'M', 'C', '1' };
+    static final int VERSION = 1;
+    static final int BLOCK_END = 0;
+    static final int BLOCK_ROWS = 1;
+    static final int BLOCK_ROBUSTNESS = 2;
+    static final int BLOCK_CAUSATION = 3;
+    static final int BLOCK_HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    static final int DEFAULT_BLOCK_ROWS = 4096;
+    static final long DEFAULT_STREAM_INTERVAL_MILLIS = 1000L;
+    // 同名のファイルがある場合に付ける番号の上限
+    private static final int MAX_NAME_SUFFIX = 999;
+
+    private final Path file;
+    private final boolean streaming;
+    private final TraceHistory history;
+    private final CausationCache causation;
+    private final String[] signalNames;
+    private final int blockRows;
+    private final long streamIntervalMillis;
+    private final Thread writer;
+
+    // 評価スレッドから渡される最新のロバストネス（オンライン型のため先頭区間は不変）
+    private double[] robUp = new double[0];
+    private double[] robLow = new double[0];
+    private boolean closing = false;
+
+    // 書き込みスレッド開始前に開き、以降は書き込みスレッドのみが触る
+    private final FileChannel channel;
+    // 以下は書き込みスレッドのみが触る
+    private ByteBuffer buf;
+    private double[] column;
+    private int width = -1;
+    private final List<long[]> index = new ArrayList<>();
+
+    // 書き込み済みの行数（統計用に他スレッドからも読む）
+    private volatile int rowsWritten = 0;
+    private volatile int robustnessWritten = 0;
+    private volatile int causationWritten = 0;
+    private volatile long bytesWritten = 0;
+    private volatile boolean failed = false;
+
+    /**
+     * @param file 書き出し先（既に存在する場合は上書きせず、"name_1.cmc" のように番号を付ける）
+     * @param streaming true なら実行中に逐次追記し、false なら close 時にまとめて書き出す
+     * @param history 受信履歴
+     * @param causation 因果解析のキャッシュ
+     * @param signalNames 信号名（time を除く。列数が合わない場合は sig1, sig2, ... とする）
+     * @throws IOException ファイルを作成できない場合
+     */
+    ColumnarTraceWriter(Path file, boolean streaming, TraceHistory history, CausationCache causation, String[] signalNames)
+            throws IOException {
+        this(file, streaming, history, causation, signalNames, DEFAULT_BLOCK_ROWS, DEFAULT_STREAM_INTERVAL_MILLIS);
+    }
+
+    ColumnarTraceWriter(Path file, boolean streaming, TraceHistory history, CausationCache causation, String[] signalNames,
+                        int blockRows, long streamIntervalMillis) throws IOException {
+        Path target = file;
+        FileChannel ch = null;
+        for (int n = 1; ch == null; n++) {
+            try {
+                ch = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                if (n > MAX_NAME_SUFFIX) throw e;
+                target = withSuffix(file, n);
+            }
+        }
+        this.file = target;
+        this.channel = ch;
+        this.streaming = streaming;
+        this.history = history;
+        this.causation = causation;
+        this.signalNames = signalNames.clone();
+        this.blockRows = Math.max(1, blockRows);
+        this.streamIntervalMillis = Math.max(0L, streamIntervalMillis);
+        writer = new Thread(this::writeLoop, "MonitoringTCP-Exporter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 書き出し先の実際のパス（同名のファイルがあった場合は番号付き）。
+     */
+    Path file() {
+        return file;
+    }
+
+    private static Path withSuffix(Path file, int n) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String suffixed = dot > 0 ? name.substring(0, dot) + "_" + n + name.substring(dot) : name + "_" + n;
+        return file.resolveSibling(suffixed);
+    }
+
+    /**
+     * 最新のロバストネス評価結果を渡す（配列はこのクラスが保持するため、以降変更しないこと）。
+     */
+    synchronized void offerRobustness(double[] up, double[] low) {
+        if (up == null || low == null || Math.min(up.length, low.length) <= robUp.length) return;
+        robUp = up;
+        robLow = low;
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                boolean last;
+                synchronized (this) {
+                    if (streaming) {
+                        // 書き込みは streamIntervalMillis に1回にまとめる（判定確定後も行は伸び続ける）
+                        long deadline = System.currentTimeMillis() + streamIntervalMillis;
+                        long remaining;
+                        while (!closing && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                            wait(remaining);
+                        }
+                    } else {
+                        while (!closing) wait();
+                    }
+                    last = closing;
+                }
+                drain();
+                if (last) break;
+            }
+            writeFooter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            logger.log(Level.WARNING, "Columnar export to " + file + " failed", e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Failed to close " + file, e);
+            }
+        }
+    }
+
+    /**
+     * 未書き込みの行・ロバストネス・因果解析をブロックとして追記する。
+     */
+    private void drain() throws IOException {
+        TraceHistory.Snapshot snapshot = history.snapshot();
+        if (width < 0) {
+            if (snapshot.size() == 0 && !closing()) return;
+            width = snapshot.size() > 0 ? snapshot.width() : signalNames.length + 1;
+            writeHeader();
+        }
+        if (snapshot.width() == width) {
+            int n = snapshot.size();
+            while (rowsWritten < n) {
+                int count = Math.min(blockRows, n - rowsWritten);
+                writeRowBlock(snapshot, rowsWritten, count);
+                rowsWritten += count;
+            }
+        }
+        double[] up;
+        double[] low;
+        synchronized (this) {
+            up = robUp;
+            low = robLow;
+        }
+        // 行より先にロバストネスだけが書かれることはない（受信前の値は評価されない）
+        int robN = Math.min(Math.min(up.length, low.length), rowsWritten);
+        while (robustnessWritten < robN) {
+            int count = Math.min(blockRows, robN - robustnessWritten);
+            writePairBlock(BLOCK_ROBUSTNESS, robustnessWritten, count, up, low);
+            robustnessWritten += count;
+        }
+        if (causation.coveredLength() > causationWritten) {
+            double[][] cau = causation.snapshot();
+            int cauN = Math.min(Math.min(cau[0].length, cau[1].length), rowsWritten);
+            while (causationWritten < cauN) {
+                int count = Math.min(blockRows, cauN - causationWritten);
+                writePairBlock(BLOCK_CAUSATION, causationWritten, count, cau[0], cau[1]);
+                causationWritten += count;
+            }
+        }
+    }
+
+    private synchronized boolean closing() {
+        return closing;
+    }
+
+    private void writeHeader() throws IOException {
+        String[] names = new String[width];
+        names[0] = "time";
+        for (int c = 1; c < width; c++) {
+            names[c] = (signalNames.length == width - 1) ? signalNames[c - 1].trim() : "sig" + c;
+        }
+        // 1 ブロック分（行ブロックが最大）の固定長バッファを使い回す
+        int blockBytes = BLOCK_HEADER_BYTES + Math.max(width, 2) * blockRows * Double.BYTES;
+        int headerBytes = MAGIC.length + 2 * Integer.BYTES;
+        for (String name : names) headerBytes += Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+        buf = ByteBuffer.allocateDirect(Math.max(blockBytes, headerBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        column = new double[blockRows];
+        buf.clear();
+        buf.put(MAGIC).putInt(VERSION).putInt(width);
+        for (String name : names) {
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            buf.putShort((short) b.length).put(b);
+        }
+        flushBuffer();
+    }
+
+    private void writeRowBlock(TraceHistory.Snapshot snapshot, int from, int count) throws IOException {
+        long offset = channel.position();
+        buf.clear();
+        buf.putInt(BLOCK_ROWS).putLong(from).putInt(count);
+        for (int c = 0; c < width; c++) {
+            snapshot.readColumn(c, from, from + count, column, 0);
+            buf.asDoubleBuffer().put(column, 0, count);
+            buf.position(buf.position() + count * Double.BYTES);
+        }
+        flushBuffer();
+        index.add(new long[] { BLOCK_ROWS, from, count, offset });
+    }
+
+    private void writePairBlock(int type, int from, int count, double[] up, double[] low) throws IOException {
+        long offset = channel.position();
+        buf.clear();
+        buf.putInt(type).putLong(from).putInt(count);
+        buf.asDoubleBuffer().put(up, from, count);
+        buf.position(buf.position() + count * Double.BYTES);
+        buf.asDoubleBuffer().put(low, from, count);
+        buf.position(buf.position() + count * Double.BYTES);
+        flushBuffer();
+        index.add(new long[] { type, from, count, offset });
+    }
+
+    private void writeFooter() throws IOException {
+        if (width < 0) return;
+        long footerOffset = channel.position();
+        int footerBytes = Integer.BYTES + Long.BYTES + Integer.BYTES
+                + index.size() * (Integer.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES) + Long.BYTES + MAGIC.length;
+        ByteBuffer footer = ByteBuffer.allocate(footerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt(BLOCK_END).putLong(rowsWritten).putInt(index.size());
+        for (long[] e : index) {
+            footer.putInt((int) e[0]).putLong(e[1]).putInt((int) e[2]).putLong(e[3]);
+        }
+        footer.putLong(footerOffset).put(MAGIC);
+        footer.flip();
+        while (footer.hasRemaining()) bytesWritten += channel.write(footer);
+        channel.force(false);
+    }
+
+    private void flushBuffer() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            bytesWritten += channel.write(buf);
+        }
+    }
+
+    /**
+     * 残りを書き出してフッターを付け、ファイルを閉じる。
+     * @param timeoutMillis 書き込み完了を待つ最大時間
+     */
+    void close(long timeoutMillis) {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warning("Columnar export to " + file + " did not finish within " + timeoutMillis + " ms.");
+        }
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"mode\":\"%s\",\"file\":\"%s\",\"rows\":%d,\"robustnessRows\":%d,\"causationRows\":%d,\"bytes\":%d,\"failed\":%b}",
+                streaming ? "stream" : "stop", MonitoringHttpServer.jsonEscape(file.toString()),
+                rowsWritten, robustnessWritten, causationWritten, bytesWritten, failed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s (rows=%d, robustness=%d, causation=%d, %d bytes)",
+                file, rowsWritten, robustnessWritten, causationWritten, bytesWritten);
+    }
+}
@@ -0,0 +1,115 @@
+package org.CauMon;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * {@link PipelineEvents} を記録する JDK Flight Recorder の記録を1つ管理する（HTTP の /jfr から操作する）。
+ */
+final class FlightRecording {
+
+    private static final Logger logger = Logger.getLogger(FlightRecording.class.getName());
+
+    private static final String[] PER_SAMPLE_EVENTS = { "Parse", "HistoryLock" };
+    private static final String[] STAGE_EVENTS = { "TraceBuild", "MatlabCall", "Evaluation", "Render", "FinalSave" };
+
+    // 書き出し先はファイル名のみ指定できる（区切り文字や "..", 先頭の "." は不可）
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    private final Path directory;
+    private Recording recording;
+    private String settings;
+    private long sampleThresholdMillis;
+
+    /**
+     * @param directory 記録の書き出し先フォルダ（HTTP から任意のパスに書けないよう固定する）
+     */
+    FlightRecording(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 記録を開始する。
+     * @param settings JDK の設定（"default" / "profile"）、または "none"（CauMon のイベントのみ）
+     * @param maxAgeSeconds 保持する期間（0 で無制限）
+     * @param maxSizeMb 保持する最大サイズ（0 で無制限）
+     * @param sampleThresholdMillis サンプルごとのイベント（Parse / HistoryLock）を記録する最小の所要時間
+     * @throws IllegalStateException 既に記録中の場合
+     */
+    synchronized void start(String settings, long maxAgeSeconds, long maxSizeMb, long sampleThresholdMillis)
+            throws IOException, ParseException {
+        if (recording != null) {
+            throw new IllegalStateException("Flight recording already running");
+        }
+        String s = (settings == null || settings.isEmpty()) ? "none" : settings;
+        Recording r = "none".equals(s) ? new Recording() : new Recording(Configuration.getConfiguration(s));
+        r.setName("CauMon");
+        r.setToDisk(true);
+        if (maxAgeSeconds > 0) r.setMaxAge(Duration.ofSeconds(maxAgeSeconds));
+        if (maxSizeMb > 0) r.setMaxSize(maxSizeMb * 1024 * 1024);
+        Duration sampleThreshold = Duration.ofMillis(Math.max(0, sampleThresholdMillis));
+        for (String e : PER_SAMPLE_EVENTS) {
+            r.enable(PipelineEvents.PREFIX + e).withThreshold(sampleThreshold);
+        }
+        for (String e : STAGE_EVENTS) {
+            r.enable(PipelineEvents.PREFIX + e).withThreshold(Duration.ZERO);
+        }
+        r.start();
+        this.recording = r;
+        this.settings = s;
+        this.sampleThresholdMillis = Math.max(0, sampleThresholdMillis);
+        logger.info("Flight recording started (settings=" + s + ", sampleThreshold=" + this.sampleThresholdMillis + " ms)");
+    }
+
+    /**
+     * 記録を停止して書き出し先フォルダのファイルに書き出す。
+     * @param file ファイル名（null/空の場合はタイムスタンプ付きの既定名）
+     * @return 書き出したファイルの絶対パス
+     * @throws IllegalArgumentException ファイル名にパスが含まれる場合（記録は続ける）
+     * @throws IllegalStateException 記録していない場合
+     */
+    synchronized Path stop(String file) throws IOException {
+        String name = file == null || file.isEmpty() ? defaultFilename() : file;
+        if (!FILE_NAME.matcher(name).matches() || name.contains("..")) {
+            throw new IllegalArgumentException("Invalid file name (no directories allowed): " + name);
+        }
+        if (recording == null) {
+            throw new IllegalStateException("Flight recording is not running");
+        }
+        Path out = directory.resolve(name);
+        try {
+            recording.stop();
+            recording.dump(out);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        logger.info("Flight recording written to " + out);
+        return out;
+    }
+
+    synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    synchronized String toJson() {
+        if (recording == null) return "{\"recording\":false}";
+        return "{\"recording\":true,\"settings\":\"" + MonitoringHttpServer.jsonEscape(settings) + "\""
+                + ",\"sampleThresholdMs\":" + sampleThresholdMillis
+                + ",\"startedAt\":\"" + recording.getStartTime() + "\""
+                + ",\"bytes\":" + recording.getSize() + "}";
+    }
+
+    private static String defaultFilename() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy_MM_dd_HHmmss");
+        return String.format("caumon_%s.jfr", LocalDateTime.now().format(formatter));
+    }
+}
@@ -0,0 +1,244 @@
+package org.CauMon;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Gorilla 方式の列圧縮（可逆）。
+ * - 値の列: 直前値との XOR を取り、先頭/末尾のゼロを除いた有効ビットのみを書き込む。
+ *   滑らかな信号では XOR の有効ビットが少なく、同じ値が続けば 1 ビットで済む。
+ * - 時刻の列: IEEE754 のビット列を long とみなした delta-of-delta を可変長で書き込む。
+ *   ほぼ等間隔の時刻では delta-of-delta がほぼ 0 になり、1 サンプルあたり数ビットで済む。
+ *   ビット列上で差分を取るため、浮動小数点の丸めを伴わず元の値を完全に復元できる。
+ */
+final class GorillaCodec {
+
+    private GorillaCodec() {}
+
+    /**
+     * 圧縮済みのビット列
+     */
+    static final class EncodedColumn {
+        final long[] words;
+        final int bitLength;
+
+        EncodedColumn(long[] words, int bitLength) {
+            this.words = words;
+            this.bitLength = bitLength;
+        }
+
+        int sizeBytes() {
+            return (bitLength + 7) / 8;
+        }
+    }
+
+    static EncodedColumn encodeValues(double[] values, int count) {
+        BitWriter w = new BitWriter(Math.max(1, count));
+        if (count == 0) return w.finish();
+        long prev = Double.doubleToRawLongBits(values[0]);
+        w.write(prev, 64);
+        int prevLeading = Integer.MAX_VALUE;
+        int prevTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            long cur = Double.doubleToRawLongBits(values[i]);
+            long xor = cur ^ prev;
+            if (xor == 0) {
+                w.writeBit(0);
+            } else {
+                w.writeBit(1);
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (prevLeading != Integer.MAX_VALUE && leading >= prevLeading && trailing >= prevTrailing) {
+                    // 直前の有効ビット範囲に収まる
+                    w.writeBit(0);
+                    int meaningful = 64 - prevLeading - prevTrailing;
+                    w.write(xor >>> prevTrailing, meaningful);
+                } else {
+                    w.writeBit(1);
+                    int meaningful = 64 - leading - trailing;
+                    w.write(leading, 5);
+                    w.write(meaningful - 1, 6);
+                    w.write(xor >>> trailing, meaningful);
+                    prevLeading = leading;
+                    prevTrailing = trailing;
+                }
+            }
+            prev = cur;
+        }
+        return w.finish();
+    }
+
+    static void decodeValues(EncodedColumn col, int count, DoubleConsumer out) {
+        if (count == 0) return;
+        BitReader r = new BitReader(col);
+        long prev = r.read(64);
+        out.accept(Double.longBitsToDouble(prev));
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (r.readBit() != 0) {
+                if (r.readBit() != 0) {
+                    leading = (int) r.read(5);
+                    int meaningful = (int) r.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                int meaningful = 64 - leading - trailing;
+                prev ^= r.read(meaningful) << trailing;
+            }
+            out.accept(Double.longBitsToDouble(prev));
+        }
+    }
+
+    static EncodedColumn encodeTimes(double[] times, int count) {
+        BitWriter w = new BitWriter(Math.max(1, count / 4));
+        if (count == 0) return w.finish();
+        long prev = Double.doubleToRawLongBits(times[0]);
+        w.write(prev, 64);
+        if (count == 1) return w.finish();
+        long cur = Double.doubleToRawLongBits(times[1]);
+        long prevDelta = cur - prev;
+        w.write(prevDelta, 64);
+        prev = cur;
+        for (int i = 2; i < count; i++) {
+            cur = Double.doubleToRawLongBits(times[i]);
+            long delta = cur - prev;
+            long dod = delta - prevDelta;
+            // 各区間は符号付き 7/9/12 ビットで表せる範囲（復号時に符号拡張する）
+            if (dod == 0) {
+                w.writeBit(0);
+            } else if (dod >= -64 && dod <= 63) {
+                w.write(0b10, 2);
+                w.write(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                w.write(0b110, 3);
+                w.write(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                w.write(0b1110, 4);
+                w.write(dod, 12);
+            } else {
+                w.write(0b1111, 4);
+                w.write(dod, 64);
+            }
+            prevDelta = delta;
+            prev = cur;
+        }
+        return w.finish();
+    }
+
+    static void decodeTimes(EncodedColumn col, int count, DoubleConsumer out) {
+        if (count == 0) return;
+        BitReader r = new BitReader(col);
+        long prev = r.read(64);
+        out.accept(Double.longBitsToDouble(prev));
+        if (count == 1) return;
+        long prevDelta = r.read(64);
+        prev += prevDelta;
+        out.accept(Double.longBitsToDouble(prev));
+        for (int i = 2; i < count; i++) {
+            long dod;
+            if (r.readBit() == 0) {
+                dod = 0;
+            } else if (r.readBit() == 0) {
+                dod = signExtend(r.read(7), 7);
+            } else if (r.readBit() == 0) {
+                dod = signExtend(r.read(9), 9);
+            } else if (r.readBit() == 0) {
+                dod = signExtend(r.read(12), 12);
+            } else {
+                dod = r.read(64);
+            }
+            prevDelta += dod;
+            prev += prevDelta;
+            out.accept(Double.longBitsToDouble(prev));
+        }
+    }
+
+    private static long signExtend(long v, int bits) {
+        int shift = 64 - bits;
+        return (v << shift) >> shift;
+    }
+
+    /**
+     * long 配列に MSB から詰めて書き込むビットライター
+     */
+    private static final class BitWriter {
+        private long[] words;
+        private int bitLength;
+
+        BitWriter(int initialWords) {
+            words = new long[initialWords];
+        }
+
+        void writeBit(int bit) {
+            write(bit, 1);
+        }
+
+        /**
+         * value の下位 bits ビットを書き込む（bits は 1..64）。
+         */
+        void write(long value, int bits) {
+            if (bits < 64) value &= (1L << bits) - 1;
+            int wordIdx = bitLength >>> 6;
+            int used = bitLength & 63;
+            ensure(wordIdx + 2);
+            int free = 64 - used;
+            if (bits <= free) {
+                words[wordIdx] |= value << (free - bits);
+            } else {
+                int rest = bits - free;
+                words[wordIdx] |= value >>> rest;
+                words[wordIdx + 1] |= value << (64 - rest);
+            }
+            bitLength += bits;
+        }
+
+        private void ensure(int n) {
+            if (n > words.length) {
+                long[] grown = new long[Math.max(n, words.length * 2)];
+                System.arraycopy(words, 0, grown, 0, words.length);
+                words = grown;
+            }
+        }
+
+        EncodedColumn finish() {
+            int n = (bitLength + 63) >>> 6;
+            long[] exact = new long[n];
+            System.arraycopy(words, 0, exact, 0, n);
+            return new EncodedColumn(exact, bitLength);
+        }
+    }
+
+    /**
+     * {@link BitWriter} で書いたビット列を先頭から読み出す
+     */
+    private static final class BitReader {
+        private final long[] words;
+        private int pos;
+
+        BitReader(EncodedColumn col) {
+            this.words = col.words;
+        }
+
+        int readBit() {
+            int bit = (int) ((words[pos >>> 6] >>> (63 - (pos & 63))) & 1L);
+            pos++;
+            return bit;
+        }
+
+        long read(int bits) {
+            int wordIdx = pos >>> 6;
+            int used = pos & 63;
+            int avail = 64 - used;
+            long v;
+            if (bits <= avail) {
+                v = words[wordIdx] << used >>> (64 - bits);
+            } else {
+                int rest = bits - avail;
+                long hi = words[wordIdx] << used >>> used;
+                long lo = words[wordIdx + 1] >>> (64 - rest);
+                v = (hi << rest) | lo;
+            }
+            pos += bits;
+            return v;
+        }
+    }
+}
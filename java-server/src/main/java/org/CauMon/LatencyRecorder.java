@@ -0,0 +1,75 @@
+package org.CauMon;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * レイテンシの記録と分位点の算出。直近 capacity 件をリングバッファに保持し、
+ * 件数と最大値は全期間で集計する。
+ */
+final class LatencyRecorder {
+
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private final long[] ring;
+    private int next = 0;
+    private int filled = 0;
+    private long count = 0;
+    private long maxNanos = 0;
+
+    LatencyRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    LatencyRecorder(int capacity) {
+        this.ring = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        ring[next] = nanos;
+        next = (next + 1) % ring.length;
+        if (filled < ring.length) filled++;
+        count++;
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    synchronized void reset() {
+        next = 0;
+        filled = 0;
+        count = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * 直近の記録から分位点を求める（ミリ秒）。記録が無ければ 0。
+     * @param p 0..100
+     */
+    synchronized double percentileMillis(double p) {
+        if (filled == 0) return 0.0;
+        long[] sorted = Arrays.copyOf(ring, filled);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1e6;
+    }
+
+    synchronized double maxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"count\":%d,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}",
+                count(), percentileMillis(50), percentileMillis(90), percentileMillis(99), maxMillis());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "n=%d, p50=%.2f ms, p90=%.2f ms, p99=%.2f ms, max=%.2f ms",
+                count(), percentileMillis(50), percentileMillis(90), percentileMillis(99), maxMillis());
+    }
+}
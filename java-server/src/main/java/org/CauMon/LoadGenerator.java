@@ -0,0 +1,573 @@
+package org.CauMon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 監視サーバー向けの負荷生成・レイテンシ計測ツール（experiment/send_test_data.ps1 の置き換え）。
+ * N 本の TCP 接続を同時に張り、合成データまたは記録済みの [time, signals...] 列を
+ * 指定レート・バースト形状で送信し、スループットとサンプル→判定レイテンシの分位点を報告する。
+ *
+ * MATLAB エンジンに依存しない単独のクラスとして実装している（mvn -P loadgen でこのクラスのみビルドできる）。
+ *
+ * オプション（--key=value）:
+ *   --host=localhost            送信先ホスト
+ *   --ports=9999[,10000,...]    送信先ポート（接続 i はポート i に割り当て）
+ *   --connections=N             同時接続数（既定: ポート数、ポート数以下）。監視サーバーの1セッション（ポート）は
+ *                               同時に1接続しか処理しないため、接続ごとに別のセッションのポートを指定する
+ *   --format=text|binary        送信形式（既定: text）
+ *   --signals=2                 合成データの信号数（time を除く）
+ *   --dt=0.1                    合成データの時刻刻み
+ *   --replay=path               記録済みデータ（"time,sig1,..." の行）を送信（末尾に達したら時刻をずらして繰り返す）
+ *   --rate=100                  接続あたりの送信レート（サンプル/秒、0 で無制限）
+ *   --burst-size=K              K サンプルずつまとめて送信（--burst-interval-ms ごと）
+ *   --burst-interval-ms=P       バースト間隔（既定: K / rate から算出）
+ *   --duration=10               送信時間（秒）
+ *   --samples=N                 接続あたりの最大送信サンプル数
+ *   --status=URL                接続 0 の判定レイテンシを計測する /status URL (例: http://localhost:8080/status?session=default)
+ *                               サーバーの評価完了時刻とこのプロセスの送信時刻を比べるため、同一ホストでのみ有効
+ *   --poll-ms=5                 /status のポーリング間隔
+ *   --drain-ms=3000             送信終了後に判定・応答を待つ時間
+ *   --ack=true                  サーバーの応答モード（/start の "ack": true）で返るロバストネスを読み、
+ *                               全接続について受信→応答のレイテンシを計測する
+ *   --lockstep=true             閉ループの送信元を模擬する: 1バーストを送るたびに、その全サンプルの応答を
+ *                               受け取るまで次を送らない（--ack=true を含む）。--drain-ms 以内に応答が
+ *                               なければその接続を失敗として打ち切る
+ */
+public final class LoadGenerator {
+
+    // MonitoringTCPServer.BINARY_MAGIC と同じ値（このクラスを単独でビルドできるよう複製している）
+    private static final byte[] BINARY_MAGIC = { 'C', 'M', 'B', '1' };
+
+    private final String host;
+    private final int[] ports;
+    private final int connections;
+    private final boolean binary;
+    private final int signals;
+    private final double dt;
+    private final List<double[]> replay;
+    private final double rate;
+    private final int burstSize;
+    private final long burstIntervalNanos;
+    private final long durationNanos;
+    private final long maxSamples;
+    private final String statusUrl;
+    private final long pollMillis;
+    private final long drainMillis;
+    private final boolean ack;
+    private final boolean lockstep;
+
+    private LoadGenerator(Map<String, String> opts) throws IOException {
+        host = opts.getOrDefault("host", "localhost");
+        String[] portStrs = opts.getOrDefault("ports", opts.getOrDefault("port", "9999")).split(",");
+        ports = new int[portStrs.length];
+        for (int i = 0; i < portStrs.length; i++) ports[i] = Integer.parseInt(portStrs[i].trim());
+        connections = Integer.parseInt(opts.getOrDefault("connections", String.valueOf(ports.length)));
+        // 監視サーバーはポート（セッション）ごとに1接続ずつ処理し、後続の接続は前の接続が終わるまで待たされる。
+        // 同じポートに複数接続すると同時送信にならず、スループットも正しく測れないため受け付けない
+        if (connections > ports.length || Arrays.stream(ports).limit(connections).distinct().count() < connections) {
+            throw new IllegalArgumentException("--connections=" + connections + " needs " + connections
+                    + " distinct --ports: each monitoring session port serves one connection at a time "
+                    + "(start one session per connection)");
+        }
+        binary = "binary".equalsIgnoreCase(opts.getOrDefault("format", "text"));
+        signals = Integer.parseInt(opts.getOrDefault("signals", "2"));
+        dt = Double.parseDouble(opts.getOrDefault("dt", "0.1"));
+        replay = opts.containsKey("replay") ? readReplay(opts.get("replay")) : null;
+        rate = Double.parseDouble(opts.getOrDefault("rate", "100"));
+        burstSize = Math.max(1, Integer.parseInt(opts.getOrDefault("burst-size", "1")));
+        if (opts.containsKey("burst-interval-ms")) {
+            burstIntervalNanos = (long) (Double.parseDouble(opts.get("burst-interval-ms")) * 1_000_000L);
+        } else {
+            burstIntervalNanos = rate > 0 ? (long) (burstSize * 1e9 / rate) : 0L;
+        }
+        durationNanos = (long) (Double.parseDouble(opts.getOrDefault("duration", "10")) * 1e9);
+        maxSamples = Long.parseLong(opts.getOrDefault("samples", String.valueOf(Long.MAX_VALUE)));
+        statusUrl = opts.get("status");
+        pollMillis = Long.parseLong(opts.getOrDefault("poll-ms", "5"));
+        drainMillis = Long.parseLong(opts.getOrDefault("drain-ms", "3000"));
+        lockstep = Boolean.parseBoolean(opts.getOrDefault("lockstep", "false"));
+        ack = lockstep || Boolean.parseBoolean(opts.getOrDefault("ack", "false"));
+    }
+
+    /**
+     * 1接続分の送信結果
+     */
+    private static final class ConnectionResult {
+        final int index;
+        final int port;
+        long samples;
+        long bytes;
+        long elapsedNanos;
+        volatile String error;
+        // サンプルごとの送信時刻（エポックミリ秒 / nanoTime）とサンプル時刻。
+        // 配列の参照を先に、件数を後に公開するため、sentCount を読んでから配列を読めば範囲内が確定している
+        volatile long[] sendMillis = new long[0];
+        volatile long[] sendNanos = new long[0];
+        volatile double[] sendTimes = new double[0];
+        volatile int sentCount = 0;
+        // 応答（ack）の受信結果。応答読み取りスレッドのみが書き込む（acks は lockstep の送信側も待つ）
+        volatile long acks;
+        long settledAcks;
+        long unmatchedAcks;
+        long[] ackLatencyNanos = new long[0];
+        int ackLatencyCount;
+
+        ConnectionResult(int index, int port) {
+            this.index = index;
+            this.port = port;
+        }
+    }
+
+    private static List<double[]> readReplay(String path) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split(",");
+                double[] row = new double[parts.length];
+                try {
+                    for (int i = 0; i < parts.length; i++) row[i] = Double.parseDouble(parts[i].trim());
+                } catch (NumberFormatException e) {
+                    continue; // ヘッダ行など
+                }
+                if (row.length >= 2) rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) throw new IOException("No samples in replay file: " + path);
+        return rows;
+    }
+
+    /**
+     * i 番目のサンプルを生成する（replay 時は時刻をずらして繰り返す）。
+     */
+    private double[] sample(long i, int connection) {
+        if (replay != null) {
+            int n = replay.size();
+            double[] src = replay.get((int) (i % n));
+            double span = replay.get(n - 1)[0] - replay.get(0)[0] + dt;
+            double[] row = src.clone();
+            row[0] = src[0] + (i / n) * span;
+            return row;
+        }
+        double t = i * dt;
+        double[] row = new double[signals + 1];
+        row[0] = t;
+        for (int k = 1; k <= signals; k++) {
+            row[k] = 50.0 + 10.0 * Math.sin(2 * Math.PI * t / (10.0 + k + connection)) + k;
+        }
+        return row;
+    }
+
+    private void runConnection(ConnectionResult result, CountDownLatch startGate) {
+        int index = result.index;
+        int port = result.port;
+        boolean track = (index == 0 && statusUrl != null) || ack;
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), 5000);
+            OutputStream raw = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            DataOutputStream out = new DataOutputStream(raw);
+            int width = -1;
+            StringBuilder line = new StringBuilder(128);
+            double[] burstTimes = new double[burstSize];
+            Thread ackReader = null;
+            if (ack) {
+                InputStream in = socket.getInputStream();
+                ackReader = new Thread(() -> readAcks(result, in), "LoadGenerator-AckReader-" + index);
+                ackReader.start();
+            }
+            startGate.await();
+
+            long start = System.nanoTime();
+            long nextBurst = start;
+            long i = 0;
+            while (i < maxSamples && System.nanoTime() - start < durationNanos) {
+                if (burstIntervalNanos > 0) {
+                    long wait = nextBurst - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                    nextBurst += burstIntervalNanos;
+                }
+                long burstStart = i;
+                for (int b = 0; b < burstSize && i < maxSamples; b++, i++) {
+                    double[] row = sample(i, index);
+                    burstTimes[b] = row[0];
+                    if (binary) {
+                        if (width < 0) {
+                            width = row.length;
+                            out.write(BINARY_MAGIC);
+                            out.writeInt(width);
+                            result.bytes += BINARY_MAGIC.length + 4;
+                        }
+                        for (int c = 0; c < width; c++) out.writeDouble(c < row.length ? row[c] : 0.0);
+                        result.bytes += 8L * width;
+                    } else {
+                        line.setLength(0);
+                        for (int c = 0; c < row.length; c++) {
+                            if (c > 0) line.append(',');
+                            line.append(row[c]);
+                        }
+                        line.append('\n');
+                        byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+                        out.write(bytes);
+                        result.bytes += bytes.length;
+                    }
+                }
+                if (track) {
+                    // フラッシュ直前の時刻をこのバーストの全サンプルの送信時刻とする。
+                    // 応答がフラッシュ直後に届いても照合できるよう、送信前に公開しておく
+                    recordSends(result, burstStart, i, burstTimes);
+                }
+                out.flush();
+                if (lockstep && !awaitAcks(result, i)) {
+                    result.error = "no ack for sample " + (i - 1) + " within " + drainMillis + " ms (lockstep)";
+                    break;
+                }
+            }
+            result.elapsedNanos = System.nanoTime() - start;
+            result.samples = i;
+            if (ackReader != null) {
+                // 送信終了を通知し、サーバーが残りの応答を返して接続を閉じるまで待つ
+                socket.shutdownOutput();
+                ackReader.join(drainMillis);
+            }
+        } catch (IOException e) {
+            result.error = e.toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.error = "interrupted";
+        }
+    }
+
+    private static void recordSends(ConnectionResult r, long from, long to, double[] burstTimes) {
+        long millis = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        long[] sm = r.sendMillis;
+        long[] sn = r.sendNanos;
+        double[] st = r.sendTimes;
+        if (to > sm.length) {
+            int n = (int) Math.max(to, Math.max(1024, sm.length * 2L));
+            sm = Arrays.copyOf(sm, n);
+            sn = Arrays.copyOf(sn, n);
+            st = Arrays.copyOf(st, n);
+        }
+        for (long k = from; k < to; k++) {
+            sm[(int) k] = millis;
+            sn[(int) k] = nanos;
+            st[(int) k] = burstTimes[(int) (k - from)];
+        }
+        r.sendMillis = sm;
+        r.sendNanos = sn;
+        r.sendTimes = st;
+        r.sentCount = (int) to;
+    }
+
+    /**
+     * lockstep モードで、送信済みの count サンプルすべての応答が届くまで待つ。
+     * @return --drain-ms 以内に届いた場合 true
+     */
+    private boolean awaitAcks(ConnectionResult r, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + drainMillis;
+        synchronized (r) {
+            long remaining;
+            while (r.acks < count && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                r.wait(remaining);
+            }
+            return r.acks >= count;
+        }
+    }
+
+    // ===== 応答（ack）の読み取り =====
+
+    /**
+     * サーバーから返る [time, up_rob, low_rob, settled] を読み、サンプル時刻で送信記録と照合する。
+     * サーバー側で溢れて捨てられた応答は照合時に読み飛ばす。
+     */
+    private void readAcks(ConnectionResult r, InputStream raw) {
+        int cursor = 0;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024));
+            BufferedReader text = binary ? null : new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            while (true) {
+                double time;
+                boolean settled;
+                if (binary) {
+                    try {
+                        time = in.readDouble();
+                    } catch (EOFException eof) {
+                        break;
+                    }
+                    in.readDouble();
+                    in.readDouble();
+                    settled = in.readDouble() != 0.0;
+                } else {
+                    String line = text.readLine();
+                    if (line == null) break;
+                    String[] parts = line.split(",");
+                    if (parts.length < 4) continue;
+                    time = Double.parseDouble(parts[0]);
+                    settled = !"0".equals(parts[3].trim());
+                }
+                long now = System.nanoTime();
+                synchronized (r) {
+                    r.acks++;
+                    r.notifyAll();
+                }
+                if (settled) r.settledAcks++;
+                int sent = r.sentCount;
+                double[] times = r.sendTimes;
+                long[] nanos = r.sendNanos;
+                while (cursor < sent && times[cursor] < time) cursor++;
+                if (cursor < sent && times[cursor] == time) {
+                    if (r.ackLatencyCount == r.ackLatencyNanos.length) {
+                        r.ackLatencyNanos = Arrays.copyOf(r.ackLatencyNanos, Math.max(1024, r.ackLatencyCount * 2));
+                    }
+                    r.ackLatencyNanos[r.ackLatencyCount++] = now - nanos[cursor];
+                    cursor++;
+                } else {
+                    r.unmatchedAcks++;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            if (r.error == null && !(e instanceof SocketException)) {
+                System.err.println("ack read failed on connection " + r.index + ": " + e);
+            }
+        }
+    }
+
+    // ===== 判定レイテンシ計測（/status のポーリング） =====
+
+    private static final Pattern EVALUATED_SIZE = Pattern.compile("\"evaluatedTraceSize\":(\\d+)");
+    private static final Pattern EVALUATED_AT = Pattern.compile("\"evaluatedAtMillis\":(\\d+)");
+
+    /**
+     * /status から [評価済み時間ステップ数, 評価完了時刻] を取得する。
+     */
+    private long[] pollStatus() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(statusUrl).openConnection();
+        conn.setConnectTimeout(2000);
+        conn.setReadTimeout(2000);
+        try (InputStream in = conn.getInputStream()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            Matcher size = EVALUATED_SIZE.matcher(body);
+            Matcher at = EVALUATED_AT.matcher(body);
+            if (!size.find() || !at.find()) throw new IOException("Unexpected /status response: " + body);
+            return new long[] { Long.parseLong(size.group(1)), Long.parseLong(at.group(1)) };
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * 評価済み時間ステップ数の増加を追い、新たに評価に含まれたサンプルの レイテンシ（評価完了 - 送信）を集める。
+     */
+    private final class LatencyPoller implements Runnable {
+        private final long baseline;
+        private final ConnectionResult tracked;
+        private final List<Long> latencies = new ArrayList<>();
+        private volatile boolean sendersDone = false;
+        private long seen = 0;
+
+        LatencyPoller(long baseline, ConnectionResult tracked) {
+            this.baseline = baseline;
+            this.tracked = tracked;
+        }
+
+        @Override
+        public void run() {
+            long deadline = Long.MAX_VALUE;
+            while (System.currentTimeMillis() < deadline) {
+                if (sendersDone && deadline == Long.MAX_VALUE) {
+                    deadline = System.currentTimeMillis() + drainMillis;
+                }
+                try {
+                    long[] st = pollStatus();
+                    long evaluated = st[0] - baseline;
+                    int sent = tracked.sentCount;
+                    long[] sends = tracked.sendMillis;
+                    long upTo = Math.min(evaluated, sent);
+                    for (long i = seen; i < upTo; i++) {
+                        latencies.add(Math.max(0L, st[1] - sends[(int) i]));
+                    }
+                    seen = Math.max(seen, upTo);
+                    if (sendersDone && seen >= sent) break;
+                } catch (IOException e) {
+                    System.err.println("status poll failed: " + e.getMessage());
+                }
+                LockSupport.parkNanos(pollMillis * 1_000_000L);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.printf(Locale.ROOT, "CauMon load test: host=%s ports=%s connections=%d format=%s rate=%s burst=%d source=%s%s%n",
+                host, Arrays.toString(ports), connections, binary ? "binary" : "text",
+                rate > 0 ? rate + "/s" : "unlimited", burstSize, replay != null ? "replay" : "synthetic(" + signals + ")",
+                lockstep ? " lockstep" : "");
+
+        ConnectionResult[] results = new ConnectionResult[connections];
+        for (int c = 0; c < connections; c++) {
+            results[c] = new ConnectionResult(c, ports[c % ports.length]);
+        }
+        LatencyPoller poller = null;
+        Thread pollThread = null;
+        if (statusUrl != null) {
+            if (!isLocalHost(host)) {
+                System.out.println("warning: --status compares the server's evaluatedAtMillis with this host's clock; "
+                        + "sample->verdict latency is only meaningful when both run on the same host (use --ack=true)");
+            }
+            poller = new LatencyPoller(pollStatus()[0], results[0]);
+            pollThread = new Thread(poller, "LoadGenerator-LatencyPoller");
+            pollThread.setDaemon(true);
+        }
+
+        CountDownLatch startGate = new CountDownLatch(1);
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            final ConnectionResult r = results[c];
+            threads[c] = new Thread(() -> runConnection(r, startGate), "LoadGenerator-" + c);
+            threads[c].start();
+        }
+        if (pollThread != null) pollThread.start();
+        startGate.countDown();
+        long wallStart = System.nanoTime();
+        for (Thread t : threads) t.join();
+        long wallNanos = System.nanoTime() - wallStart;
+
+        if (poller != null) {
+            poller.sendersDone = true;
+            pollThread.join();
+        }
+
+        long totalSamples = 0;
+        long totalBytes = 0;
+        long sendNanos = 0;
+        int failed = 0;
+        System.out.println();
+        System.out.println("conn  port   samples        bytes    seconds    samples/s" + (ack ? "      acks  settled" : ""));
+        for (ConnectionResult r : results) {
+            if (r.error != null) {
+                failed++;
+                System.out.printf(Locale.ROOT, "%4d  %5d  FAILED: %s%n", r.index, r.port, r.error);
+                continue;
+            }
+            double sec = r.elapsedNanos / 1e9;
+            System.out.printf(Locale.ROOT, "%4d  %5d  %8d  %11d  %9.3f  %11.1f",
+                    r.index, r.port, r.samples, r.bytes, sec, sec > 0 ? r.samples / sec : 0.0);
+            System.out.println(ack ? String.format(Locale.ROOT, "  %8d  %7d", r.acks, r.settledAcks) : "");
+            totalSamples += r.samples;
+            totalBytes += r.bytes;
+            sendNanos = Math.max(sendNanos, r.elapsedNanos);
+        }
+        // 応答待ちの時間を含めないよう、送信にかかった時間の最大値で全体スループットを求める
+        double wallSec = (sendNanos > 0 ? sendNanos : wallNanos) / 1e9;
+        System.out.printf(Locale.ROOT, "total       %8d  %11d  %9.3f  %11.1f  (%.2f MB/s)%n",
+                totalSamples, totalBytes, wallSec, totalSamples / wallSec, totalBytes / wallSec / 1e6);
+
+        if (poller != null) {
+            List<Long> lat = poller.latencies;
+            long sent = results[0].samples;
+            if (lat.isEmpty()) {
+                System.out.printf(Locale.ROOT, "latency: no verdicts observed for connection 0 (%d samples sent)%n", sent);
+            } else {
+                long[] sorted = lat.stream().mapToLong(Long::longValue).sorted().toArray();
+                System.out.printf(Locale.ROOT,
+                        "latency sample->verdict (conn 0 only, n=%d/%d): p50=%d p90=%d p99=%d p99.9=%d max=%d ms%n",
+                        sorted.length, sent, percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                        percentile(sorted, 99.9), sorted[sorted.length - 1]);
+                System.out.println("  (server evaluation time vs. client send time on the wall clock: valid on one host only;"
+                        + " use --ack=true for per-connection latency)");
+            }
+        }
+        if (ack) {
+            long acks = 0;
+            long unmatched = 0;
+            int n = 0;
+            for (ConnectionResult r : results) {
+                acks += r.acks;
+                unmatched += r.unmatchedAcks;
+                n += r.ackLatencyCount;
+            }
+            long[] all = new long[n];
+            int k = 0;
+            for (ConnectionResult r : results) {
+                System.arraycopy(r.ackLatencyNanos, 0, all, k, r.ackLatencyCount);
+                k += r.ackLatencyCount;
+            }
+            Arrays.sort(all);
+            if (n == 0) {
+                System.out.printf(Locale.ROOT, "ack latency: no acks received (%d samples sent; is \"ack\": true set on /start?)%n",
+                        totalSamples);
+            } else {
+                System.out.printf(Locale.ROOT,
+                        "ack latency send->ack (all conns, n=%d/%d, unmatched=%d): p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms%n",
+                        n, totalSamples, unmatched, percentile(all, 50) / 1e6, percentile(all, 90) / 1e6,
+                        percentile(all, 99) / 1e6, percentile(all, 99.9) / 1e6, all[n - 1] / 1e6);
+            }
+            if (acks < totalSamples) {
+                System.out.printf(Locale.ROOT, "warning: %d of %d samples were not acknowledged%n", totalSamples - acks, totalSamples);
+            }
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean isLocalHost(String host) {
+        return "localhost".equalsIgnoreCase(host) || host.startsWith("127.") || "::1".equals(host);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+            int eq = arg.indexOf('=');
+            opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        LoadGenerator generator;
+        try {
+            generator = new LoadGenerator(opts);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        generator.run();
+    }
+}
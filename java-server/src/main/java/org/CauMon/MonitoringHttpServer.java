@@ -5,7 +5,15 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
@@ -13,14 +21,63 @@ import java.util.logging.Logger;
  * 簡易HTTPサーバー - Webページから監視サーバーの起動・停止を制御
  * エンドポイント:
  * - GET /       -> 制御用のHTML UIを返す
- * - POST /start -> JSON形式で signals, phi, port を受け取り、TCP監視サーバーを起動
+ * - POST /start -> JSON形式で signals, phi, port（任意で sink, ack）を受け取り、TCP監視サーバーを起動
  * - POST /stop  -> TCP監視サーバーを停止
+ * - GET /causation -> 因果解析を要求し、up_optCau / low_optCau を JSON で返す
+ * - GET /events -> 確定済みの判定と、sink が queue の場合は未取得の判定イベントを JSON で返す
+ * - GET /status -> 稼働中セッションの状態を JSON で返す
+ * 各エンドポイントは任意の session（/start, /stop は JSON、GET は ?session=）で対象セッションを指定できる。
+ * 省略時は "default" セッションを使う。
+ * コーディネーターとして起動した場合は {@link ClusterCoordinator} が同じエンドポイントを担当し、
+ * 登録ノードへ転送する。
  */
 public class MonitoringHttpServer {
 
     private static final Logger logger = Logger.getLogger(MonitoringHttpServer.class.getName());
-    private final MonitoringTCPServer monitoringServer = new MonitoringTCPServer();
+    static final String DEFAULT_SESSION = "default";
+
+    // セッションID -> TCP監視サーバー（セッションごとに MATLAB エンジンを持つ）
+    private final Map<String, MonitoringTCPServer> sessions = new ConcurrentHashMap<>();
     private HttpServer httpServer;
+    private ClusterCoordinator coordinator;
+    private ClusterNodeAgent nodeAgent;
+    // JFR 記録（PipelineEvents）。JVM 全体で1つ
+    // JFR の記録は起動時の作業フォルダに書き出す
+    private final FlightRecording flightRecording = new FlightRecording(Paths.get(""));
+
+    /**
+     * start() の前に呼び出すと、このサーバーをクラスタのコーディネーターとして動作させる。
+     * @param placement セッション配置方式
+     */
+    public void enableCoordinator(ClusterCoordinator.Placement placement) {
+        this.coordinator = new ClusterCoordinator(placement);
+    }
+
+    /**
+     * @param firstSessionPort セッションに割り当てる TCP ポートの範囲の先頭
+     * @param lastSessionPort 同じく末尾（含む）
+     */
+    public void enableCoordinator(ClusterCoordinator.Placement placement, int firstSessionPort, int lastSessionPort) {
+        this.coordinator = new ClusterCoordinator(placement, firstSessionPort, lastSessionPort);
+    }
+
+    /**
+     * start() の後に呼び出すと、このサーバーをノードとしてコーディネーターに登録する。
+     * @param coordinatorUrl コーディネーターのベースURL (例: "http://localhost:8080")
+     * @param advertiseUrl コーディネーターから到達可能なこのノードのベースURL
+     */
+    public void joinCluster(String coordinatorUrl, String advertiseUrl) {
+        nodeAgent = new ClusterNodeAgent(coordinatorUrl, advertiseUrl, advertiseUrl, this::runningSessionIds);
+        nodeAgent.start();
+    }
+
+    private List<String> runningSessionIds() {
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, MonitoringTCPServer> e : sessions.entrySet()) {
+            if (e.getValue().isRunning()) ids.add(e.getKey());
+        }
+        return ids;
+    }
 
     /**
      * HTTPサーバーを起動する
@@ -31,17 +88,33 @@ public class MonitoringHttpServer {
         httpServer = HttpServer.create(new InetSocketAddress(httpPort), 0);
 
         httpServer.createContext("/", new RootHandler());
-        httpServer.createContext("/start", new StartHandler());
-        httpServer.createContext("/stop", new StopHandler());
-        httpServer.setExecutor(null);
+        if (coordinator != null) {
+            coordinator.install(httpServer);
+        } else {
+            httpServer.createContext("/start", new StartHandler());
+            httpServer.createContext("/stop", new StopHandler());
+            httpServer.createContext("/causation", new CausationHandler());
+            httpServer.createContext("/events", new EventsHandler());
+            httpServer.createContext("/status", new StatusHandler());
+        }
+        httpServer.createContext("/jfr", new JfrHandler());
+        // コーディネーターは転送中に、ノードは /start の MATLAB 起動中にブロックするため、ハンドラーを複数スレッドで処理する
+        // （起動中のセッションがあっても、他のセッションの /start, /stop, /status に応答できる）
+        httpServer.setExecutor(Executors.newCachedThreadPool());
         httpServer.start();
-        logger.info("HTTP control server started on port " + httpPort);
+        logger.info("HTTP control server started on port " + httpPort + (coordinator != null ? " (coordinator)" : ""));
     }
 
     /**
      * HTTPサーバーを停止する
      */
     public void stop() {
+        if (nodeAgent != null) {
+            nodeAgent.stop();
+        }
+        if (coordinator != null) {
+            coordinator.shutdown();
+        }
         if (httpServer != null) {
             httpServer.stop(1);
             logger.info("HTTP control server stopped.");
@@ -148,28 +221,62 @@ public class MonitoringHttpServer {
             // 簡易JSONパース（外部ライブラリを使わない）
             String signals = extractJsonValue(body, "signals");
             String phi = extractJsonValue(body, "phi");
+            String sink = extractJsonValue(body, "sink");
+            String ack = extractJsonValue(body, "ack");
+            String evalTimeout = extractJsonValue(body, "evalTimeoutMs");
+            String export = extractJsonValue(body, "export");
+            String renderWorker = extractJsonValue(body, "renderWorker");
+            String session = extractJsonValue(body, "session");
+            if (session == null || session.isEmpty()) session = DEFAULT_SESSION;
             int port = 9999;
             String portStr = extractJsonValue(body, "port");
             try {
                 if (portStr != null) port = Integer.parseInt(portStr);
             } catch (NumberFormatException ignored) {}
 
+            int status = 200;
             String resp;
+            MonitoringTCPServer monitoringServer = sessions.computeIfAbsent(session, k -> {
+                MonitoringTCPServer s = new MonitoringTCPServer();
+                s.setSessionName(k);
+                return s;
+            });
             try {
+                // 通知先は他の設定より先に検証する（ループバック以外のコールバック先は 400）
+                VerdictSink verdictSink = sink != null ? VerdictSinks.fromSpec(sink) : null;
                 monitoringServer.configure(signals, phi);
+                if (verdictSink != null) {
+                    monitoringServer.setVerdictSink(verdictSink);
+                }
+                if (ack != null) {
+                    monitoringServer.setAckEnabled(Boolean.parseBoolean(ack));
+                }
+                if (evalTimeout != null) {
+                    monitoringServer.setEvalTimeoutMillis(Long.parseLong(evalTimeout));
+                }
+                if (export != null) {
+                    monitoringServer.setExportMode(export);
+                }
+                if (renderWorker != null) {
+                    monitoringServer.setRenderWorkerEnabled(Boolean.parseBoolean(renderWorker));
+                }
                 monitoringServer.startServerAsync(port);
                 resp = "サーバーを起動しました (ポート: " + port + ")\n"
                      + "シグナル: " + signals + "\n"
-                     + "STL式: " + phi;
+                     + "STL式: " + phi
+                     + (sink != null ? "\n判定通知先: " + sink : "")
+                     + (monitoringServer.isAckEnabled() ? "\n応答モード: 有効" : "")
+                     + (monitoringServer.getExportMode() != null ? "\n列指向ファイル出力: " + monitoringServer.getExportMode() : "")
+                     + (monitoringServer.isRenderWorkerEnabled() ? "" : "\n描画ワーカー: 無効")
+                     + (DEFAULT_SESSION.equals(session) ? "" : "\nセッション: " + session);
             } catch (Exception e) {
+                if (!monitoringServer.isRunning()) {
+                    sessions.remove(session, monitoringServer);
+                }
+                status = e instanceof IllegalArgumentException ? 400 : 500;
                 resp = "サーバー起動に失敗しました: " + e.getMessage();
             }
-            byte[] out = resp.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
-            exchange.sendResponseHeaders(200, out.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(out);
-            }
+            sendResponse(exchange, status, "text/plain; charset=utf-8", resp);
         }
     }
 
@@ -183,24 +290,256 @@ public class MonitoringHttpServer {
                 exchange.sendResponseHeaders(405, -1);
                 return;
             }
-            monitoringServer.stopServer();
+            String body = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
+                    .lines().collect(Collectors.joining("\n"));
+            String session = extractJsonValue(body, "session");
+            if (session == null || session.isEmpty()) session = DEFAULT_SESSION;
+            MonitoringTCPServer monitoringServer = sessions.remove(session);
+            if (monitoringServer != null) {
+                monitoringServer.stopServer();
+            }
             String resp = "サーバーを停止しました";
-            byte[] out = resp.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
-            exchange.sendResponseHeaders(200, out.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(out);
+            sendResponse(exchange, 200, "text/plain; charset=utf-8", resp);
+        }
+    }
+
+    /**
+     * 因果解析ハンドラー - 現在の履歴に対する因果解析結果を返す（キャッシュ済みなら再計算しない）
+     */
+    private class CausationHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            int status = 200;
+            String resp;
+            MonitoringTCPServer monitoringServer = sessions.get(sessionOf(exchange));
+            try {
+                if (monitoringServer == null) {
+                    throw new IllegalStateException("No such session: " + sessionOf(exchange));
+                }
+                double[][] cau = monitoringServer.requestCausation();
+                resp = "{\"length\":" + cau[0].length
+                     + ",\"up_optCau\":" + toJsonArray(cau[0])
+                     + ",\"low_optCau\":" + toJsonArray(cau[1]) + "}";
+            } catch (Exception e) {
+                status = 503;
+                resp = "{\"error\":\"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}";
+            }
+            sendResponse(exchange, status, "application/json; charset=utf-8", resp);
+        }
+    }
+
+    /**
+     * JFR ハンドラー - パイプラインの各段階のイベント（PipelineEvents）の記録を開始・停止する
+     *   POST /jfr/start {"settings":"none|default|profile","maxAgeSeconds":600,"maxSizeMb":256,"sampleThresholdMs":0}
+     *   POST /jfr/stop  {"file":"trace.jfr"}（作業フォルダ内のファイル名のみ。省略時はタイムスタンプ付きの既定名）
+     *   GET  /jfr       記録の状態
+     */
+    private class JfrHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            int status = 200;
+            String resp;
+            try {
+                if ("/jfr".equals(path) || "/jfr/".equals(path)) {
+                    if (!"GET".equalsIgnoreCase(method)) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    resp = flightRecording.toJson();
+                } else if ("/jfr/start".equals(path) || "/jfr/stop".equals(path)) {
+                    if (!"POST".equalsIgnoreCase(method)) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    String body = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
+                            .lines().collect(Collectors.joining("\n"));
+                    if (path.endsWith("/start")) {
+                        flightRecording.start(extractJsonValue(body, "settings"),
+                                parseLongOr(extractJsonValue(body, "maxAgeSeconds"), 0L),
+                                parseLongOr(extractJsonValue(body, "maxSizeMb"), 0L),
+                                parseLongOr(extractJsonValue(body, "sampleThresholdMs"), 0L));
+                        resp = flightRecording.toJson();
+                    } else {
+                        resp = "{\"file\":\"" + jsonEscape(flightRecording.stop(extractJsonValue(body, "file")).toString()) + "\"}";
+                    }
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                resp = "{\"error\":\"" + jsonEscape(String.valueOf(e.getMessage())) + "\"}";
+            } catch (IllegalStateException e) {
+                status = 409;
+                resp = "{\"error\":\"" + jsonEscape(String.valueOf(e.getMessage())) + "\"}";
+            } catch (Exception e) {
+                status = 500;
+                resp = "{\"error\":\"" + jsonEscape(String.valueOf(e.getMessage())) + "\"}";
+            }
+            sendResponse(exchange, status, "application/json; charset=utf-8", resp);
+        }
+    }
+
+    private static long parseLongOr(String value, long fallback) {
+        if (value == null || value.isEmpty()) return fallback;
+        return Long.parseLong(value);
+    }
+
+    /**
+     * イベントハンドラー - 確定済みの判定と、キュー sink に溜まった判定イベントを返す
+     */
+    private class EventsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            MonitoringTCPServer monitoringServer = sessions.get(sessionOf(exchange));
+            if (monitoringServer == null) {
+                sendResponse(exchange, 404, "application/json; charset=utf-8",
+                        "{\"error\":\"No such session: " + jsonEscape(sessionOf(exchange)) + "\"}");
+                return;
+            }
+            VerdictEvent settled = monitoringServer.getSettledVerdict();
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"settled\":").append(settled != null ? settled.toJson() : "null");
+            sb.append(",\"events\":[");
+            VerdictSink sink = monitoringServer.getVerdictSink();
+            if (sink instanceof VerdictSinks.QueueSink) {
+                int i = 0;
+                for (VerdictEvent e : ((VerdictSinks.QueueSink) sink).drain()) {
+                    if (i++ > 0) sb.append(',');
+                    sb.append(e.toJson());
+                }
+            }
+            sb.append("]}");
+            sendResponse(exchange, 200, "application/json; charset=utf-8", sb.toString());
+        }
+    }
+
+    /**
+     * ステータスハンドラー - セッションの稼働状態を返す（?session= 指定時はそのセッションのみ）
+     */
+    private class StatusHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
             }
+            String only = queryParam(exchange.getRequestURI(), "session");
+            StringBuilder sb = new StringBuilder("{\"sessions\":[");
+            int i = 0;
+            for (Map.Entry<String, MonitoringTCPServer> e : sessions.entrySet()) {
+                if (only != null && !only.equals(e.getKey())) continue;
+                MonitoringTCPServer server = e.getValue();
+                VerdictEvent settled = server.getSettledVerdict();
+                if (i++ > 0) sb.append(',');
+                sb.append("{\"session\":\"").append(jsonEscape(e.getKey())).append('"')
+                  .append(",\"running\":").append(server.isRunning())
+                  .append(",\"port\":").append(server.getTcpPort())
+                  .append(",\"traceSize\":").append(server.getTraceSize())
+                  .append(",\"settled\":").append(settled != null ? settled.toJson() : "null")
+                  .append(",\"evaluatedTraceSize\":").append(server.getEvaluatedTraceSize())
+                  .append(",\"evaluatedAtMillis\":").append(server.getEvaluatedAtMillis())
+                  .append(",\"history\":").append(server.getHistoryStats().toJson())
+                  .append(",\"ack\":").append(server.getAckStatsJson())
+                  .append(",\"atoms\":").append(server.getAtomStatsJson())
+                  .append(",\"matlab\":").append(server.getMatlabStatsJson())
+                  .append(",\"export\":").append(server.getExportStatsJson())
+                  .append(",\"pipeline\":").append(server.getPipelineStatsJson())
+                  .append('}');
+            }
+            sb.append("]}");
+            sendResponse(exchange, 200, "application/json; charset=utf-8", sb.toString());
         }
     }
 
+    /**
+     * 応答を送信する共通処理。
+     */
+    static void sendResponse(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] out = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, out.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(out);
+        }
+    }
+
+    private static String sessionOf(HttpExchange exchange) {
+        String session = queryParam(exchange.getRequestURI(), "session");
+        return (session == null || session.isEmpty()) ? DEFAULT_SESSION : session;
+    }
+
+    /**
+     * クエリ文字列から値を取り出す（無ければ null）。
+     */
+    static String queryParam(URI uri, String key) {
+        String query = uri.getQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(key)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * JSON 文字列値用のエスケープ（例外メッセージ等に含まれる改行・制御文字もエスケープする）。
+     */
+    static String jsonEscape(String value) {
+        if (value == null) return "";
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * double 配列を JSON 配列文字列に変換する（±Inf/NaN は JSON で表現できないため null）
+     */
+    private static String toJsonArray(double[] values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            double v = values[i];
+            if (Double.isNaN(v) || Double.isInfinite(v)) sb.append("null");
+            else sb.append(v);
+        }
+        return sb.append(']').toString();
+    }
+
     /**
      * 簡易JSON値抽出ヘルパー（外部ライブラリ不要）
      * @param json JSON文字列
      * @param key 抽出するキー
-     * @return 値（文字列または数値）
+     * @return 値（文字列または数値）。文字列のエスケープ（\\n, \\", \\uXXXX 等）は戻す
      */
-    private static String extractJsonValue(String json, String key) {
+    static String extractJsonValue(String json, String key) {
         if (json == null || key == null) return null;
         String q = "\"" + key + "\"";
         int idx = json.indexOf(q);
@@ -212,24 +551,86 @@ public class MonitoringHttpServer {
         if (i >= json.length()) return null;
         char c = json.charAt(i);
         if (c == '\"') {
-            int end = json.indexOf('\"', i + 1);
-            if (end > i) return json.substring(i + 1, end);
+            StringBuilder sb = new StringBuilder();
+            for (int j = i + 1; j < json.length(); j++) {
+                char d = json.charAt(j);
+                if (d == '\"') return sb.toString();
+                if (d != '\\' || j + 1 >= json.length()) {
+                    sb.append(d);
+                    continue;
+                }
+                char e = json.charAt(++j);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (j + 4 < json.length()) {
+                            try {
+                                sb.append((char) Integer.parseInt(json.substring(j + 1, j + 5), 16));
+                                j += 4;
+                                break;
+                            } catch (NumberFormatException ignored) {
+                                // 16進でなければそのまま残す
+                            }
+                        }
+                        sb.append('\\').append(e);
+                        break;
+                    default: sb.append(e); // \" \\ \/
+                }
+            }
         } else {
-            // 数値等
+            // 数値・true/false 等
             int j = i;
-            while (j < json.length() && (Character.isDigit(json.charAt(j)) || json.charAt(j) == '-')) j++;
+            while (j < json.length() && (Character.isLetterOrDigit(json.charAt(j)) || json.charAt(j) == '-')) j++;
             return json.substring(i, j);
         }
         return null;
     }
 
     /**
-     * メインメソッド - HTTPサーバーをポート8080で起動
+     * メインメソッド - HTTPサーバーを起動（既定はポート8080の単体モード）
+     * オプション:
+     *   --port=8080                     HTTPポート
+     *   --role=coordinator              コーディネーターとして起動
+     *   --placement=hash|least-load     コーディネーターのセッション配置方式（既定: hash）
+     *   --session-ports=20000-20999     コーディネーターがセッションに割り当てる TCP ポートの範囲
+     *   --coordinator=http://host:8080  ノードとしてコーディネーターに登録
+     *   --advertise=http://host:8081    コーディネーターに通知する自ノードのURL（既定: http://localhost:ポート）
      */
     public static void main(String[] args) throws Exception {
+        int port = 8080;
+        String role = "standalone";
+        String placement = "hash";
+        String coordinatorUrl = null;
+        String advertiseUrl = null;
+        int firstSessionPort = ClusterCoordinator.DEFAULT_FIRST_SESSION_PORT;
+        int lastSessionPort = ClusterCoordinator.DEFAULT_LAST_SESSION_PORT;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) port = Integer.parseInt(arg.substring("--port=".length()));
+            else if (arg.startsWith("--role=")) role = arg.substring("--role=".length());
+            else if (arg.startsWith("--placement=")) placement = arg.substring("--placement=".length());
+            else if (arg.startsWith("--coordinator=")) coordinatorUrl = arg.substring("--coordinator=".length());
+            else if (arg.startsWith("--advertise=")) advertiseUrl = arg.substring("--advertise=".length());
+            else if (arg.startsWith("--session-ports=")) {
+                String[] range = arg.substring("--session-ports=".length()).split("-");
+                firstSessionPort = Integer.parseInt(range[0].trim());
+                lastSessionPort = Integer.parseInt(range[range.length - 1].trim());
+            }
+            else logger.warning("Unknown option: " + arg);
+        }
+
         MonitoringHttpServer s = new MonitoringHttpServer();
-        s.start(8080);
-        logger.info("ブラウザで http://localhost:8080 にアクセスしてください");
+        if ("coordinator".equalsIgnoreCase(role)) {
+            s.enableCoordinator(ClusterCoordinator.Placement.fromString(placement), firstSessionPort, lastSessionPort);
+        }
+        s.start(port);
+        if (coordinatorUrl != null) {
+            s.joinCluster(coordinatorUrl, advertiseUrl != null ? advertiseUrl : "http://localhost:" + port);
+        }
+        logger.info("ブラウザで http://localhost:" + port + " にアクセスしてください");
         // JVM 終了時に HTTP を停止
         Runtime.getRuntime().addShutdownHook(new Thread(s::stop));
     }
@@ -1,16 +1,29 @@
 package org.CauMon;
 
 import com.mathworks.engine.MatlabEngine;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,8 +39,24 @@ public class MonitoringTCPServer {
     private static final Logger logger = Logger.getLogger(MonitoringTCPServer.class.getName());
     private static final int PORT = 9999; // 待ち受けるTCPポート番号
 
+    // ロバストネス評価と因果解析の MATLAB コマンド（因果解析は必要時のみ実行する）
+    private static final String ROB_EVAL_CMD = "[up_robM, low_robM] = stl_eval_mex_pw(signal_str, phi_str, trace, tau);\n";
+    // 原子述語を Java 側で評価した場合のロバストネス評価（atom_trace は [time; atom1; atom2; ...]）
+    private static final String ATOM_ROB_EVAL_CMD = "[up_robM, low_robM] = stl_eval_mex_pw(atom_signal_str, atom_phi_str, atom_trace, tau);\n";
+    private static final String CAUSATION_EVAL_CMD = "[up_optCau, low_optCau] = stl_causation_opt(signal_str, phi_str, trace, tau);\n";
+    // バイナリ形式の受信ストリームの先頭に置くマジックバイト
+    static final byte[] BINARY_MAGIC = { 'C', 'M', 'B', '1' };
+    private static final int MAX_BINARY_COLUMNS = 1024;
+    // 判定時刻（stl_eval_mex_pw / stl_causation_opt に渡す tau）
+    private static final double VERDICT_TAU = 0.0;
+
     private MatlabEngine matlabEngine;
-    private final List<double[]> javaTraceHistory = new ArrayList<>();
+    // エンジン呼び出しはすべて期限付きの非同期呼び出しで行う（サーキットブレーカー付き）
+    private volatile BoundedMatlabEngine matlab;
+    // ロバストネス評価の期限（ミリ秒、0 なら既定値）。エンジン起動時に適用する
+    private volatile long evalTimeoutMillis = 0L;
+    // 受信履歴。古いブロックは XOR / delta-of-delta で圧縮して保持する
+    private final TraceHistory javaTraceHistory = new TraceHistory();
 
     // システムプロパティ(設定情報)からカレントディレクトリを取得
     // user.dir はJavaアプリケーションの起動ディレクトリを指す
@@ -50,12 +79,75 @@ public class MonitoringTCPServer {
     private volatile long lastVisualizeTimeMillis = 0L;
 
     // 追加: STL 評価の間隔（ミリ秒）。可視化とは独立に制御する。
-    private volatile long stlEvalIntervalMillis = 1000L;
+    // 因果解析を分離したためロバストネス評価は軽く、短い間隔で回せる
+    private volatile long stlEvalIntervalMillis = 200L;
     private volatile long lastStlEvalTimeMillis = 0L;
+    // 間引きで評価されなかったサンプルの後追い評価（次のサンプルが来なくても次の評価時刻に評価する）
+    private volatile ScheduledThreadPoolExecutor deferredEvalScheduler;
+    private final AtomicBoolean deferredEvalPending = new AtomicBoolean(false);
+    // ブレーカーが開いている間の後追い評価の再試行間隔の下限
+    private static final long DEFERRED_EVAL_RETRY_MILLIS = 100L;
 
     // MATLAB 上に最新の STL 結果があるかを示すフラグ
     private volatile boolean haveStlResults = false;
 
+    // 最後にロバストネス評価が完了したときの時間ステップ数と時刻（負荷試験でのレイテンシ計測用）
+    private volatile int evaluatedTraceSize = 0;
+    private volatile long evaluatedAtMillis = 0L;
+
+    // MATLAB ワークスペース（trace, up_robM 等）を共有する呼び出しを直列化するためのロック
+    private final Object matlabLock = new Object();
+    // MATLAB ワークスペースの trace の時間ステップ数（未設定・不明なら -1）。matlabLock で保護
+    private int workspaceTraceSize = -1;
+
+    // 原子述語の Java 側評価（コンパイルできない式・無効時は null）
+    private volatile boolean javaAtomEvaluation = true;
+    private volatile AtomEvaluator atomEvaluator;
+    private volatile String atomFallbackReason = "not configured";
+
+    // 因果解析（stl_causation_opt）の結果キャッシュ。ワークスペースの up_optCau/low_optCau と常に一致させる
+    private final CausationCache causationCache = new CausationCache();
+    // ロバストネスの符号変化時に自動で因果解析を行うか
+    private volatile boolean causationOnSignChange = true;
+    // 直前の評価における最新ロバストネス上限/下限の符号（matlabLock 下で更新）
+    private int lastUpSign = 0;
+    private int lastLowSign = 0;
+
+    // 判定の確定状態。確定済みの tau については以降のロバストネス評価を省略する
+    private final VerdictTracker verdictTracker = new VerdictTracker();
+    // 判定確定イベントの通知先（既定はログ出力）
+    private volatile VerdictSink verdictSink = new VerdictSinks.LogSink();
+
+    // 同じ接続でサンプルごとのロバストネスを返す応答モード
+    private volatile boolean ackEnabled = false;
+    // 接続中クライアントの応答チャネル（応答モード無効時・未接続時は null）
+    private volatile RobustnessAckChannel ackChannel;
+    // 受信から応答書き込みまでのレイテンシ
+    private final LatencyRecorder ackLatency = new LatencyRecorder();
+    // 切断済みの接続の応答数・破棄数の累計
+    private volatile long ackedTotal = 0;
+    private volatile long ackDroppedTotal = 0;
+    private static final long ACK_CLOSE_TIMEOUT_MILLIS = 2000L;
+
+    // 列指向ファイルへの書き出し（"stream": 実行中に逐次、"stop": 停止時のみ、null: 書き出さない）
+    private volatile String exportMode = null;
+    private volatile ColumnarTraceWriter exporter;
+    private static final long EXPORT_CLOSE_TIMEOUT_MILLIS = 10_000L;
+
+    // 描画を専用エンジンのワーカーで行うか（無効・起動失敗時は評価用エンジンで描画する）
+    private volatile boolean renderWorkerEnabled = true;
+    private volatile RenderWorker renderWorker;
+    // 直近のロバストネス評価結果（描画ワーカーへ渡す。配列は変更しない）。matlabLock で保護
+    private double[][] lastRobustness = new double[][] { new double[0], new double[0] };
+    // 評価・描画それぞれの達成レート
+    private final RateMeter evalRate = new RateMeter();
+    private final LatencyRecorder evalDuration = new LatencyRecorder();
+    private final RateMeter inlineRenderRate = new RateMeter();
+    private static final long RENDER_STOP_TIMEOUT_MILLIS = 5000L;
+
+    // JFR イベント（PipelineEvents）に付けるセッション名
+    private volatile String sessionName = "default";
+
     /**
      * 可視化スロットリングの設定。
      * @param everyNSteps Nステップごとに1回可視化（1以上）
@@ -91,6 +183,158 @@ public class MonitoringTCPServer {
         }
     }
 
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getTcpPort() {
+        return tcpPort;
+    }
+
+    /**
+     * 受信済みの時間ステップ数を返す。
+     */
+    public int getTraceSize() {
+        return javaTraceHistory.size();
+    }
+
+    /**
+     * 最後に完了したロバストネス評価が対象とした時間ステップ数。
+     */
+    public int getEvaluatedTraceSize() {
+        return evaluatedTraceSize;
+    }
+
+    /**
+     * 最後のロバストネス評価が完了した時刻（エポックミリ秒、未評価なら 0）。
+     */
+    public long getEvaluatedAtMillis() {
+        return evaluatedAtMillis;
+    }
+
+    /**
+     * 受信履歴の圧縮率・デコード性能の統計を返す。
+     */
+    TraceHistory.Stats getHistoryStats() {
+        return javaTraceHistory.stats();
+    }
+
+    /**
+     * JFR イベントに記録するセッション名を設定する（HTTP サーバーがセッション作成時に設定する）。
+     */
+    void setSessionName(String sessionName) {
+        if (sessionName != null && !sessionName.isEmpty()) {
+            this.sessionName = sessionName;
+        }
+    }
+
+    /**
+     * 受信履歴・ロバストネス・因果解析の列指向ファイル（.cmc）への書き出しを設定する。
+     * 次回のサーバー起動から有効になり、ファイルは PNG と同じフォルダに作成される。
+     * @param mode "stream"（実行中に逐次追記）、"stop"（停止時にまとめて書き出し）、null/"off"（書き出さない）
+     * @throws IllegalArgumentException 不明なモードの場合
+     */
+    public void setExportMode(String mode) {
+        if (mode == null || mode.isEmpty() || "off".equals(mode)) {
+            this.exportMode = null;
+        } else if ("stream".equals(mode) || "stop".equals(mode)) {
+            this.exportMode = mode;
+        } else {
+            throw new IllegalArgumentException("Unknown export mode: " + mode + " (expected stream, stop or off)");
+        }
+    }
+
+    public String getExportMode() {
+        return exportMode;
+    }
+
+    /**
+     * 列指向ファイルへの書き出し状況の JSON（書き出していなければ null）。
+     */
+    String getExportStatsJson() {
+        ColumnarTraceWriter ex = exporter;
+        return ex != null ? ex.toJson() : "null";
+    }
+
+    /**
+     * 描画を専用の MATLAB エンジンのワーカーで行うかを設定する（既定は有効、次回のサーバー起動から反映）。
+     * 有効な場合、評価と visualize が別エンジンで並行に進み、描画は常に最新の評価結果だけを使う。
+     * @param enabled false で従来どおり評価用エンジンで描画する
+     */
+    public void setRenderWorkerEnabled(boolean enabled) {
+        this.renderWorkerEnabled = enabled;
+    }
+
+    public boolean isRenderWorkerEnabled() {
+        return renderWorkerEnabled;
+    }
+
+    /**
+     * 評価レートと描画レート（それぞれ直近 10 秒の毎秒回数）の JSON。
+     */
+    String getPipelineStatsJson() {
+        RenderWorker rw = renderWorker;
+        String render = rw != null ? rw.toJson() : "{\"worker\":false,\"rate\":" + inlineRenderRate.toJson() + "}";
+        return "{\"evaluation\":{\"rate\":" + evalRate.toJson() + ",\"durationMs\":" + evalDuration.toJson() + "}"
+                + ",\"render\":" + render + "}";
+    }
+
+    /**
+     * 描画ワーカーが使える場合はそれを返す（無効・描画用エンジンの起動中・起動失敗時は null で、評価用エンジンで描画する）。
+     */
+    private RenderWorker activeRenderWorker() {
+        RenderWorker rw = renderWorker;
+        return (rw != null && rw.isReady()) ? rw : null;
+    }
+
+    /**
+     * 応答モードを設定する。有効にすると、以降に接続したクライアントへ
+     * 受信と同じ接続で [time, up_rob, low_rob, settled] のレコードを返す。
+     * @param enabled true で応答モード
+     */
+    public void setAckEnabled(boolean enabled) {
+        this.ackEnabled = enabled;
+    }
+
+    public boolean isAckEnabled() {
+        return ackEnabled;
+    }
+
+    /**
+     * 応答モードの状態とレイテンシ（受信から応答書き込みまで）の JSON。
+     */
+    String getAckStatsJson() {
+        RobustnessAckChannel ch = ackChannel;
+        return "{\"enabled\":" + ackEnabled
+                + ",\"connected\":" + (ch != null)
+                + ",\"acked\":" + (ackedTotal + (ch != null ? ch.acked() : 0))
+                + ",\"dropped\":" + (ackDroppedTotal + (ch != null ? ch.dropped() : 0))
+                + ",\"latency\":" + ackLatency.toJson() + "}";
+    }
+
+    /**
+     * ロバストネス評価（trace の設定と stl_eval_mex_pw）1回あたりの期限を設定する（trace が長い場合は行数に応じて延長される）。
+     * 期限を過ぎた評価は中断され、連続して失敗するとエンジンが回復するまで評価を省略する。
+     * @param timeoutMillis ミリ秒（0 で既定値）
+     */
+    public void setEvalTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis < 0) return;
+        this.evalTimeoutMillis = timeoutMillis;
+        BoundedMatlabEngine m = matlab;
+        if (m != null) {
+            m.setTimeoutMillis(BoundedMatlabEngine.Call.ROBUSTNESS,
+                    timeoutMillis > 0 ? timeoutMillis : BoundedMatlabEngine.Call.ROBUSTNESS.defaultTimeoutMillis);
+        }
+    }
+
+    /**
+     * MATLAB 呼び出しの状態（サーキットブレーカー、呼び出し種別ごとのレイテンシ・期限切れ回数）の JSON。
+     */
+    String getMatlabStatsJson() {
+        BoundedMatlabEngine m = matlab;
+        return m != null ? m.toJson() : "null";
+    }
+
     /**
      * サーバー起動前に信号名とSTL式を設定する
      * @param signals カンマ区切りの信号名 (例: "speed,RPM")
@@ -120,6 +364,49 @@ public class MonitoringTCPServer {
         if (phi != null && !phi.isEmpty()) {
             this.phiStr = phi;
         }
+        compileAtoms();
+    }
+
+    /**
+     * STL 式の原子述語を Java 側の評価器にコンパイルする。一次式でない原子述語を含む場合は
+     * 従来どおり元の信号を stl_eval_mex_pw に渡して評価する。
+     */
+    private void compileAtoms() {
+        if (!javaAtomEvaluation) {
+            atomEvaluator = null;
+            atomFallbackReason = "disabled";
+            return;
+        }
+        try {
+            AtomProgram program = AtomProgram.compile(signalStr, phiStr);
+            AtomKernel kernel = AtomKernels.best();
+            atomEvaluator = new AtomEvaluator(program, kernel, signalStr.split(",").length + 1);
+            atomFallbackReason = null;
+            logger.info("Atomic predicates are evaluated in Java (kernel=" + kernel.name() + "): " + program);
+        } catch (IllegalArgumentException e) {
+            atomEvaluator = null;
+            atomFallbackReason = e.getMessage();
+            logger.info("Atomic predicates are evaluated in MATLAB: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 原子述語の Java 側評価の有効/無効を設定する（既定は有効）。
+     * @param enabled false で常に元の信号を stl_eval_mex_pw に渡す
+     */
+    @SuppressWarnings("unused")
+    public void setJavaAtomEvaluation(boolean enabled) {
+        this.javaAtomEvaluation = enabled;
+        compileAtoms();
+    }
+
+    /**
+     * 原子述語の Java 側評価の状態とカーネルのスループットの JSON。
+     */
+    String getAtomStatsJson() {
+        AtomEvaluator atoms = atomEvaluator;
+        if (atoms != null) return atoms.toJson();
+        return "{\"compiled\":false,\"reason\":\"" + MonitoringHttpServer.jsonEscape(String.valueOf(atomFallbackReason)) + "\"}";
     }
 
     // サーバー起動時に呼び出され、MATLABエンジンを起動・設定する
@@ -128,15 +415,26 @@ public class MonitoringTCPServer {
         logger.info("Starting MATLAB engine...");
 
         // PCにインストールされているmatlabを起動し、Javaプログラムからの通信チャネルを確立
-        matlabEngine = MatlabEngine.startMatlab();
+        Future<MatlabEngine> starting = MatlabEngine.startMatlabAsync();
+        try {
+            matlabEngine = starting.get(BoundedMatlabEngine.Call.SETUP.defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            starting.cancel(true);
+            throw new IllegalStateException("MATLAB engine did not start within "
+                    + BoundedMatlabEngine.Call.SETUP.defaultTimeoutMillis + " ms", e);
+        }
+        matlab = new BoundedMatlabEngine(matlabEngine);
+        if (evalTimeoutMillis > 0) {
+            matlab.setTimeoutMillis(BoundedMatlabEngine.Call.ROBUSTNESS, evalTimeoutMillis);
+        }
 
         // cauMonPathに移動してからconfigure.mを実行
         // その後、'experiment'サブフォルダに移動 (visualize.mのため)
         try {
             // eval:matlabのコマンドウィンドウで実行するコマンドを文字列で指定
-            matlabEngine.eval("cd '" + cauMonPath + "'");
-            matlabEngine.eval("configure");
-            matlabEngine.eval("cd 'experiment'");
+            matlabEval(BoundedMatlabEngine.Call.SETUP, "cd '" + cauMonPath + "'");
+            matlabEval(BoundedMatlabEngine.Call.SETUP, "configure");
+            matlabEval(BoundedMatlabEngine.Call.SETUP, "cd 'experiment'");
             logger.info("Changed directory to 'experiment' subfolder.");
         } catch (Exception e) {
             // log: エラー発生時に詳細を記録、任意のタグ付けも可能
@@ -188,15 +486,15 @@ public class MonitoringTCPServer {
              }
              traceBuilder.append("];\n");
 
-            matlabEngine.eval(traceBuilder.toString());
-            matlabEngine.eval("signal_str = '" + signalStr + "';\n");
-            matlabEngine.eval("phi_str = '" + phiStr + "';\n");
-            matlabEngine.eval("tau = 0;\n");
+            matlabEval(BoundedMatlabEngine.Call.SETUP, traceBuilder.toString());
+            matlabEval(BoundedMatlabEngine.Call.SETUP, "signal_str = '" + signalStr + "';\n");
+            matlabEval(BoundedMatlabEngine.Call.SETUP, "phi_str = '" + phiStr + "';\n");
+            matlabEval(BoundedMatlabEngine.Call.SETUP, "tau = 0;\n");
 
              long warmStart = System.currentTimeMillis();
-             matlabEngine.eval("[up_robM, low_robM] = stl_eval_mex_pw(signal_str, phi_str, trace, tau);\n");
-             matlabEngine.eval("[up_optCau, low_optCau] = stl_causation_opt(signal_str, phi_str, trace, tau);\n");
-             matlabEngine.eval("visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '', signal_str);\n");
+             matlabEval(BoundedMatlabEngine.Call.SETUP, "[up_robM, low_robM] = stl_eval_mex_pw(signal_str, phi_str, trace, tau);\n");
+             matlabEval(BoundedMatlabEngine.Call.SETUP, "[up_optCau, low_optCau] = stl_causation_opt(signal_str, phi_str, trace, tau);\n");
+             matlabEval(BoundedMatlabEngine.Call.SETUP, "visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '', signal_str);\n");
              long warmEnd = System.currentTimeMillis();
              logger.info(String.format("Warm-up visualize completed in %d ms", (warmEnd - warmStart)));
 
@@ -204,11 +502,37 @@ public class MonitoringTCPServer {
             // ウォームアップ失敗は致命的ではないので警告のみ
             logger.log(Level.WARNING, "Warm-up visualize failed (continuing without warm-up)", we);
          }
+
+        // ウォームアップ用の因果解析結果を破棄し、キャッシュと一致させる
+        try {
+            matlabEval(BoundedMatlabEngine.Call.VARIABLE, "up_optCau = []; low_optCau = [];\n");
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to reset causation variables after warm-up", e);
+        }
+        causationCache.clear();
+        verdictTracker.reset();
+        synchronized (matlabLock) {
+            // ウォームアップのダミー trace がワークスペースに残っている
+            workspaceTraceSize = -1;
+            lastUpSign = 0;
+            lastLowSign = 0;
+        }
     }
 
 
     // サーバー終了時に呼び出され、MATLABエンジンを安全に停止する
     public void shutdown() {
+        ScheduledThreadPoolExecutor s = deferredEvalScheduler;
+        if (s != null) {
+            s.shutdown(); // 予約済みの後追い評価は実行しない
+            deferredEvalScheduler = null;
+        }
+        RenderWorker rw = renderWorker;
+        if (rw != null) {
+            rw.stop(RENDER_STOP_TIMEOUT_MILLIS);
+            logger.info("Render worker: " + rw);
+            renderWorker = null;
+        }
         if (matlabEngine != null) {
             try {
                 matlabEngine.close();
@@ -216,6 +540,11 @@ public class MonitoringTCPServer {
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Error shutting down MATLAB", e);
             } finally {
+                BoundedMatlabEngine m = matlab;
+                if (m != null) {
+                    logger.info("MATLAB calls: " + m);
+                }
+                matlab = null;
                 matlabEngine = null;
             }
         }
@@ -228,19 +557,28 @@ public class MonitoringTCPServer {
     public void onNewDataReceived(double[] newDataPoint) {
 
         // まず履歴にデータを追加（スレッドセーフ）
-        synchronized (javaTraceHistory) {
-            this.javaTraceHistory.add(newDataPoint);
+        PipelineEvents.HistoryLock appendEvent = new PipelineEvents.HistoryLock();
+        appendEvent.begin();
+        try {
+            javaTraceHistory.append(newDataPoint);
+        } catch (IllegalArgumentException e) {
+            logger.warning("Dropping data point with unexpected column count: " + e.getMessage());
+            return;
         }
+        appendEvent.end();
+        if (appendEvent.shouldCommit()) {
+            appendEvent.session = sessionName;
+            appendEvent.operation = "append";
+            appendEvent.traceSize = javaTraceHistory.size();
+            appendEvent.commit();
+        }
+
+        int numTimeSteps = javaTraceHistory.size();
 
-        int numTimeSteps;
-        int numSignals;
-        // 参照はロックして基本情報を取得
-        synchronized (javaTraceHistory) {
-            numTimeSteps = this.javaTraceHistory.size();
-            if (numTimeSteps == 0) return;
-            numSignals = this.javaTraceHistory.get(0).length;
+        RobustnessAckChannel ack = ackChannel;
+        if (ack != null) {
+            ack.onIngest(newDataPoint[0], System.nanoTime());
         }
-        if (numSignals == 0) { return; }
 
         long now = System.currentTimeMillis();
 
@@ -248,6 +586,19 @@ public class MonitoringTCPServer {
         boolean needStlEval = (stlEvalIntervalMillis <= 0) || ((now - lastStlEvalTimeMillis) >= stlEvalIntervalMillis);
         boolean needVisualize = (visualizeIntervalMillis <= 0) || ((now - lastVisualizeTimeMillis) >= visualizeIntervalMillis);
 
+        // 判定が確定済みなら結果は変わらないため、ロバストネス再評価を省略する
+        boolean settled = verdictTracker.isSettled(VERDICT_TAU);
+        if (settled) {
+            needStlEval = false;
+            if (ack != null) {
+                ack.acknowledgeSettled(verdictTracker.get(VERDICT_TAU));
+            }
+        } else if (!needStlEval) {
+            // 間引いたサンプルは次のサンプルを待たずに次の評価時刻に評価する
+            // （バースト末尾での判定確定を通知し、応答を待って次を送る送信元にも応答するため）
+            scheduleDeferredEvaluation(Math.max(0L, lastStlEvalTimeMillis + stlEvalIntervalMillis - now));
+        }
+
         if (!needStlEval && !needVisualize) {
             // どちらも不要ならば早期リターン
             logger.fine(String.format("Skipping both STL eval and visualize (traceSize=%d, elapsedStl=%dms, elapsedVis=%dms).",
@@ -255,136 +606,495 @@ public class MonitoringTCPServer {
             return;
         }
 
-        // 履歴コピーは STL 評価または可視化時に必要になるため、条件付きで作成
-        double[][] historyCopy = null;
-        if (needStlEval || !haveStlResults) {
-            historyCopy = new double[numTimeSteps][numSignals];
-            synchronized (javaTraceHistory) {
-                for (int t = 0; t < numTimeSteps; t++) {
-                    double[] row = this.javaTraceHistory.get(t);
-                    System.arraycopy(row, 0, historyCopy[t], 0, numSignals);
-                }
-            }
+        // エンジンが応答しない間（サーキットブレーカーが開いている間）は評価を省略し、受信を止めない
+        BoundedMatlabEngine m = matlab;
+        if (m != null && m.isOpen()) {
+            m.recordRejected(1);
+            logger.fine(String.format("MATLAB circuit breaker open; skipping evaluation (traceSize=%d).", numTimeSteps));
+            return;
         }
 
-        // STM: 実行順序は STL 評価 -> 可視化 を基本とする。
-        try {
-            if (needStlEval) {
-                // 'trace' を MATLAB にセットし、STL 評価のみ行う（visualize は行わない）
-                StringBuilder evalBuilder = new StringBuilder();
-                evalBuilder.append("trace = [");
-                for (int s = 0; s < numSignals; s++) {
-                    for (int t = 0; t < numTimeSteps; t++) {
-                        evalBuilder.append(historyCopy[t][s]);
-                        if (t < numTimeSteps - 1) evalBuilder.append(" ");
-                    }
-                    if (s < numSignals - 1) evalBuilder.append("; ");
-                }
-                evalBuilder.append("];\n");
-                evalBuilder.append("signal_str = '").append(signalStr).append("';\n");
-                evalBuilder.append("phi_str = '").append(phiStr).append("';\n");
-                evalBuilder.append("tau = 0;\n");
-                evalBuilder.append("[up_robM, low_robM] = stl_eval_mex_pw(signal_str, phi_str, trace, tau);\n");
-                evalBuilder.append("[up_optCau, low_optCau] = stl_causation_opt(signal_str, phi_str, trace, tau);\n");
-
-                long stlStart = System.currentTimeMillis();
-                matlabEngine.eval(evalBuilder.toString());
-                long stlEnd = System.currentTimeMillis();
-                logger.info(String.format("MATLAB stl_eval took %d ms (traceSize=%d)", (stlEnd - stlStart), numTimeSteps));
-
-                // 結果を取得してログ
-                Object up_robM_obj = matlabEngine.getVariable("up_robM");
-                Object low_robM_obj = matlabEngine.getVariable("low_robM");
-
-                double[] up_robM;
-                double[] low_robM;
-
-                if (up_robM_obj instanceof Double) {
-                    up_robM = new double[] { (Double) up_robM_obj };
-                    low_robM = new double[] { (Double) low_robM_obj };
-                } else {
-                    up_robM = (double[]) up_robM_obj;
-                    low_robM = (double[]) low_robM_obj;
-                }
+        PipelineEvents.Evaluation evalEvent = new PipelineEvents.Evaluation();
+        evalEvent.begin();
 
-                lastStlEvalTimeMillis = now;
-                haveStlResults = true;
+        // 履歴コピーは STL 評価または可視化時に必要になるため、条件付きで作成
+        TraceHistory.Snapshot historyCopy = null;
+        // 原子述語を Java 側で評価する場合、ワークスペースの trace は可視化時にのみ更新する
+        RenderWorker rw = activeRenderWorker();
+        if (needStlEval || !haveStlResults || (needVisualize && (settled || atomEvaluator != null || rw != null))) {
+            historyCopy = snapshotHistory();
+            numTimeSteps = historyCopy.size();
+        }
 
-                if (up_robM != null && up_robM.length > 0) {
-                    logger.info(String.format("STL evaluated (Trace size: %-4d) | Robustness len: %-4d | Last up=%.4f, low=%.4f",
-                            numTimeSteps, up_robM.length, up_robM[up_robM.length - 1], low_robM[low_robM.length - 1]));
+        // STM: 実行順序は STL 評価 -> (符号変化時のみ) 因果解析 -> 可視化 を基本とする。
+        synchronized (matlabLock) {
+            try {
+                if (needStlEval) {
+                    evaluateAndAcknowledge(historyCopy, "stl_eval", ack, now);
                 }
-            }
 
-            // 可視化が必要なら、MATLAB 内の変数を使って visualize を呼び出す
-            if (needVisualize) {
-                // もし STL 評価をしていないが結果がない場合は、先に評価を行う
-                if (!haveStlResults) {
+                // もし可視化が必要だが STL 評価の結果がない場合は、先に評価を行う
+                if (needVisualize && !haveStlResults) {
                     // historyCopy は作成済み
-                    StringBuilder evalBuilder = new StringBuilder();
-                    evalBuilder.append("trace = [");
-                    for (int s = 0; s < numSignals; s++) {
-                        for (int t = 0; t < numTimeSteps; t++) {
-                            evalBuilder.append(Objects.requireNonNull(historyCopy)[t][s]);
-                            if (t < numTimeSteps - 1) evalBuilder.append(" ");
-                        }
-                        if (s < numSignals - 1) evalBuilder.append("; ");
+                    double[][] rob = evaluateRobustness(Objects.requireNonNull(historyCopy), "stl_eval (fallback)");
+                    checkSettlement(rob, historyCopy);
+                    if (ack != null) {
+                        ack.acknowledge(rob[0], rob[1]);
                     }
-                    evalBuilder.append("];\n");
-                    evalBuilder.append("signal_str = '").append(signalStr).append("';\n");
-                    evalBuilder.append("phi_str = '").append(phiStr).append("';\n");
-                    evalBuilder.append("tau = 0;\n");
-                    evalBuilder.append("[up_robM, low_robM] = stl_eval_mex_pw(signal_str, phi_str, trace, tau);\n");
-                    evalBuilder.append("[up_optCau, low_optCau] = stl_causation_opt(signal_str, phi_str, trace, tau);\n");
-
-                    long stlStart2 = System.currentTimeMillis();
-                    matlabEngine.eval(evalBuilder.toString());
-                    long stlEnd2 = System.currentTimeMillis();
-                    logger.info(String.format("MATLAB stl_eval (fallback) took %d ms (traceSize=%d)", (stlEnd2 - stlStart2), numTimeSteps));
                     haveStlResults = true;
                     lastStlEvalTimeMillis = now;
                 }
 
-                // visualize を呼び出す（MATLAB内の trace と robustness 変数を使う）
-                long visStart = System.currentTimeMillis();
-                // 実行中はファイル保存を行わず、描画更新のみ行う（outfile を空文字にする想定）
-                matlabEngine.eval("visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '', signal_str);\n");
-                long visEnd = System.currentTimeMillis();
-                logger.info(String.format("MATLAB visualize (runtime, no-save) took %d ms (traceSize=%d)", (visEnd - visStart), numTimeSteps));
-
-                lastVisualizeTimeMillis = now;
-
-                // optional: MATLAB から up_robM を取り出してログ
-                try {
-                    Object up_robM_obj2 = matlabEngine.getVariable("up_robM");
-                    Object low_robM_obj2 = matlabEngine.getVariable("low_robM");
-                    double[] up_robM2;
-                    double[] low_robM2;
-                    if (up_robM_obj2 instanceof Double) {
-                        up_robM2 = new double[] { (Double) up_robM_obj2 };
-                        low_robM2 = new double[] { (Double) low_robM_obj2 };
-                    } else {
-                        up_robM2 = (double[]) up_robM_obj2;
-                        low_robM2 = (double[]) low_robM_obj2;
+                if (rw != null) {
+                    // 描画ワーカーへ最新の結果を渡すだけで、描画の完了は待たない（描画間隔はワーカー側で守る）
+                    if (historyCopy != null) {
+                        rw.publish(new RenderWorker.Frame(historyCopy, lastRobustness[0], lastRobustness[1],
+                                causationCache.snapshot(), null));
                     }
-                    if (up_robM2 != null && up_robM2.length > 0) {
-                        logger.info(String.format("Graph updated (Trace size: %-4d) | Last up=%.4f, low=%.4f",
-                                numTimeSteps, up_robM2[up_robM2.length - 1], low_robM2[low_robM2.length - 1]));
+                    if (needVisualize) {
+                        lastVisualizeTimeMillis = now;
                     }
-                } catch (Exception e) {
-                    // ignore logging errors
+                } else if (needVisualize) {
+                    // 可視化が必要なら、MATLAB 内の変数を使って visualize を呼び出す
+                    if (historyCopy != null) {
+                        // 確定後は評価せず、描画用に trace のみ更新する（ロバストネスは確定時点までを表示）
+                        ensureWorkspaceTrace(historyCopy);
+                    }
+
+                    // visualize を呼び出す（MATLAB内の trace と robustness 変数を使う）
+                    // up_optCau/low_optCau はキャッシュ済みの確定区間のみ（visualize 側で長さを切り詰める）
+                    long visStart = System.currentTimeMillis();
+                    // 実行中はファイル保存を行わず、描画更新のみ行う（outfile を空文字にする想定）
+                    matlabEval(BoundedMatlabEngine.Call.VISUALIZE,
+                            "visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '', signal_str);\n", numTimeSteps);
+                    long visEnd = System.currentTimeMillis();
+                    logger.info(String.format("MATLAB visualize (runtime, no-save) took %d ms (traceSize=%d, causationLen=%d)",
+                            (visEnd - visStart), numTimeSteps, causationCache.coveredLength()));
+                    inlineRenderRate.mark();
+
+                    lastVisualizeTimeMillis = now;
+
+                    // optional: MATLAB から up_robM を取り出してログ
+                    try {
+                        double[] up_robM2 = getDoubleArray("up_robM");
+                        double[] low_robM2 = getDoubleArray("low_robM");
+                        if (up_robM2 != null && up_robM2.length > 0) {
+                            logger.info(String.format("Graph updated (Trace size: %-4d) | Last up=%.4f, low=%.4f",
+                                    numTimeSteps, up_robM2[up_robM2.length - 1], low_robM2[low_robM2.length - 1]));
+                        }
+                    } catch (Exception e) {
+                        // ignore logging errors
+                    }
+                }
+
+            } catch (TimeoutException e) {
+                // 評価は中断済み。連続するとサーキットブレーカーが開き、以降の評価を省略する
+                logger.warning(e.getMessage() + " (traceSize=" + numTimeSteps + ")");
+            } catch (BoundedMatlabEngine.CircuitOpenException e) {
+                logger.fine(e.getMessage());
+            } catch (Exception e) {
+                if (e.getClass().getName().contains("MatlabException")) {
+                    logger.log(Level.SEVERE, "MATLAB execution/engine exception (e.g., crash):", e);
+                } else {
+                    logger.log(Level.SEVERE, "General error calling MATLAB", e);
                 }
             }
+        }
+        evalEvent.end();
+        if (evalEvent.shouldCommit()) {
+            evalEvent.session = sessionName;
+            evalEvent.traceSize = numTimeSteps;
+            evalEvent.stlEval = needStlEval;
+            evalEvent.visualize = needVisualize;
+            evalEvent.atoms = atomEvaluator != null;
+            evalEvent.commit();
+        }
+    }
 
-        } catch (Exception e) {
-            if (e.getClass().getName().contains("MatlabException")) {
-                logger.log(Level.SEVERE, "MATLAB execution/engine exception (e.g., crash):", e);
-            } else {
-                logger.log(Level.SEVERE, "General error calling MATLAB", e);
+    /**
+     * 'trace' を MATLAB にセットしてロバストネス評価のみ行い（因果解析は遅延）、判定確定の検出と応答、
+     * 符号変化時の因果解析を行う。matlabLock を保持した状態で呼び出すこと。
+     */
+    private void evaluateAndAcknowledge(TraceHistory.Snapshot historyCopy, String label, RobustnessAckChannel ack,
+                                        long now) throws Exception {
+        double[][] rob = evaluateRobustness(historyCopy, label);
+        double[] up_robM = rob[0];
+        double[] low_robM = rob[1];
+
+        lastStlEvalTimeMillis = now;
+        haveStlResults = true;
+
+        if (up_robM != null && up_robM.length > 0) {
+            double lastUp = up_robM[up_robM.length - 1];
+            double lastLow = low_robM[low_robM.length - 1];
+            logger.info(String.format("STL evaluated (Trace size: %-4d) | Robustness len: %-4d | Last up=%.4f, low=%.4f",
+                    historyCopy.size(), up_robM.length, lastUp, lastLow));
+            checkSettlement(rob, historyCopy);
+            if (ack != null) {
+                ack.acknowledge(up_robM, low_robM);
+            }
+
+            // 判定が変わった（上限/下限の符号が変化した）ときだけ因果解析を行う
+            if (robustnessSignChanged(lastUp, lastLow) && causationOnSignChange) {
+                ensureCausation(historyCopy, "robustness sign change");
+            }
+        }
+    }
+
+    /**
+     * 間引きで評価されなかったサンプルの評価を予約する（予約済みなら何もしない）。
+     * @param delayMillis 次に評価できるまでの時間
+     */
+    private void scheduleDeferredEvaluation(long delayMillis) {
+        ScheduledThreadPoolExecutor s = deferredEvalScheduler;
+        if (s == null || !deferredEvalPending.compareAndSet(false, true)) return;
+        try {
+            s.schedule(this::runDeferredEvaluation, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            deferredEvalPending.set(false); // 停止中
+        }
+    }
+
+    /**
+     * 予約した時刻に、未評価のサンプルが残っていれば評価する（判定確定の検出と応答を含む）。
+     * 予約後に受信を契機とした評価が走った場合や、ブレーカーが開いている場合は改めて予約する。
+     */
+    private void runDeferredEvaluation() {
+        deferredEvalPending.set(false);
+        if (matlabEngine == null || evaluatedTraceSize >= javaTraceHistory.size()) return;
+        RobustnessAckChannel ack = ackChannel;
+        VerdictEvent settledVerdict = verdictTracker.get(VERDICT_TAU);
+        if (settledVerdict != null) {
+            if (ack != null) {
+                ack.acknowledgeSettled(settledVerdict);
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long wait = lastStlEvalTimeMillis + stlEvalIntervalMillis - now;
+        BoundedMatlabEngine m = matlab;
+        if (m != null && m.isOpen()) {
+            scheduleDeferredEvaluation(Math.max(wait, Math.max(stlEvalIntervalMillis, DEFERRED_EVAL_RETRY_MILLIS)));
+            return;
+        }
+        if (wait > 0) {
+            scheduleDeferredEvaluation(wait);
+            return;
+        }
+        TraceHistory.Snapshot historyCopy = snapshotHistory();
+        synchronized (matlabLock) {
+            try {
+                evaluateAndAcknowledge(historyCopy, "stl_eval (deferred)", ack, now);
+            } catch (TimeoutException e) {
+                logger.warning(e.getMessage() + " (traceSize=" + historyCopy.size() + ")");
+            } catch (BoundedMatlabEngine.CircuitOpenException e) {
+                logger.fine(e.getMessage());
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Deferred evaluation failed (traceSize=" + historyCopy.size() + ")", e);
             }
         }
     }
 
+    /**
+     * 受信履歴のスナップショットを取る（ロック待ちを含めて JFR の HistoryLock イベントに記録する）。
+     */
+    private TraceHistory.Snapshot snapshotHistory() {
+        PipelineEvents.HistoryLock event = new PipelineEvents.HistoryLock();
+        event.begin();
+        TraceHistory.Snapshot snapshot = javaTraceHistory.snapshot();
+        event.end();
+        if (event.shouldCommit()) {
+            event.session = sessionName;
+            event.operation = "snapshot";
+            event.traceSize = snapshot.size();
+            event.commit();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 因果解析を要求に応じて実行し、結果を返す（HTTP API から呼び出すことを想定）。
+     * 現在の履歴長までキャッシュ済みであれば MATLAB は呼び出さない。
+     * @return [0] が up_optCau、[1] が low_optCau の複製
+     * @throws Exception MATLAB エンジンが起動していない、または評価に失敗した場合
+     */
+    public double[][] requestCausation() throws Exception {
+        if (matlabEngine == null) {
+            throw new IllegalStateException("MATLAB engine is not running");
+        }
+        TraceHistory.Snapshot historyCopy = snapshotHistory();
+        if (historyCopy.size() == 0) {
+            return causationCache.snapshot();
+        }
+        synchronized (matlabLock) {
+            if (!causationCache.covers(historyCopy.size())) {
+                ensureCausation(historyCopy, "API request");
+            }
+        }
+        return causationCache.snapshot();
+    }
+
+    /**
+     * ロバストネスの符号変化による自動因果解析の有効/無効を設定する。
+     * 無効にした場合、因果解析は API 要求時と最終保存時のみ行われる。
+     * @param enabled true で符号変化時に自動計算
+     */
+    @SuppressWarnings("unused")
+    public void setCausationOnSignChange(boolean enabled) {
+        this.causationOnSignChange = enabled;
+    }
+
+    /**
+     * trace / signal_str / phi_str / tau を MATLAB ワークスペースに設定するスクリプトを構築する。
+     */
+    private String buildTraceScript(TraceHistory.Snapshot historyCopy) {
+        PipelineEvents.TraceBuild event = new PipelineEvents.TraceBuild();
+        event.begin();
+        int numSignals = historyCopy.width();
+        StringBuilder evalBuilder = new StringBuilder();
+        evalBuilder.append("trace = [");
+        // 圧縮ブロックは列ごとにストリーミングでデコードし、履歴全体を展開しない
+        for (int s = 0; s < numSignals; s++) {
+            boolean[] first = {true};
+            historyCopy.forEachInColumn(s, v -> {
+                if (!first[0]) evalBuilder.append(" ");
+                evalBuilder.append(v);
+                first[0] = false;
+            });
+            if (s < numSignals - 1) evalBuilder.append("; ");
+        }
+        evalBuilder.append("];\n");
+        evalBuilder.append("signal_str = '").append(signalStr).append("';\n");
+        evalBuilder.append("phi_str = '").append(phiStr).append("';\n");
+        evalBuilder.append("tau = ").append(VERDICT_TAU).append(";\n");
+        commitTraceBuild(event, "trace", historyCopy.size(), evalBuilder.length());
+        return evalBuilder.toString();
+    }
+
+    private void commitTraceBuild(PipelineEvents.TraceBuild event, String variable, int traceSize, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.session = sessionName;
+            event.variable = variable;
+            event.traceSize = traceSize;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * 原子述語の値を atom_trace として MATLAB ワークスペースに設定するスクリプトを構築する。
+     * time 行は履歴から、原子述語の行は {@link AtomEvaluator} の計算済みの値から作る。
+     */
+    private String buildAtomTraceScript(TraceHistory.Snapshot historyCopy, AtomEvaluator atoms) {
+        PipelineEvents.TraceBuild event = new PipelineEvents.TraceBuild();
+        event.begin();
+        int n = historyCopy.size();
+        StringBuilder evalBuilder = new StringBuilder();
+        evalBuilder.append("atom_trace = [");
+        boolean[] first = {true};
+        historyCopy.forEachInColumn(0, v -> {
+            if (!first[0]) evalBuilder.append(" ");
+            evalBuilder.append(v);
+            first[0] = false;
+        });
+        for (int k = 0; k < atoms.program().atomCount(); k++) {
+            evalBuilder.append("; ");
+            first[0] = true;
+            atoms.forEachValue(k, n, v -> {
+                if (!first[0]) evalBuilder.append(" ");
+                evalBuilder.append(v);
+                first[0] = false;
+            });
+        }
+        evalBuilder.append("];\n");
+        evalBuilder.append("atom_signal_str = '").append(atoms.program().atomSignalStr()).append("';\n");
+        evalBuilder.append("atom_phi_str = '").append(atoms.program().rewrittenPhi()).append("';\n");
+        evalBuilder.append("tau = ").append(VERDICT_TAU).append(";\n");
+        commitTraceBuild(event, "atom_trace", n, evalBuilder.length());
+        return evalBuilder.toString();
+    }
+
+    /**
+     * MATLAB ワークスペースの trace / signal_str / phi_str が historyCopy と一致していなければ設定する。
+     * 因果解析と可視化は元の信号の trace を使う。matlabLock を保持した状態で呼び出すこと。
+     */
+    private void ensureWorkspaceTrace(TraceHistory.Snapshot historyCopy) throws Exception {
+        if (workspaceTraceSize == historyCopy.size()) return;
+        matlabEval(BoundedMatlabEngine.Call.ROBUSTNESS, buildTraceScript(historyCopy), historyCopy.size());
+        workspaceTraceSize = historyCopy.size();
+    }
+
+    /**
+     * trace（原子述語を Java 側で評価する場合は atom_trace）を MATLAB にセットして
+     * stl_eval_mex_pw のみを実行し、[up_robM, low_robM] を返す。
+     * matlabLock を保持した状態で呼び出すこと。
+     */
+    private double[][] evaluateRobustness(TraceHistory.Snapshot historyCopy, String label) throws Exception {
+        AtomEvaluator atoms = atomEvaluator;
+        boolean atomPath = atoms != null && historyCopy.width() == atoms.width();
+        String script;
+        if (atomPath) {
+            // 新たに到着した行の原子述語だけを計算し、時相演算子の評価のみ MEX に任せる
+            atoms.update(historyCopy);
+            script = buildAtomTraceScript(historyCopy, atoms) + ATOM_ROB_EVAL_CMD;
+        } else {
+            script = buildTraceScript(historyCopy) + ROB_EVAL_CMD;
+        }
+        long stlStart = System.currentTimeMillis();
+        matlabEval(BoundedMatlabEngine.Call.ROBUSTNESS, script, historyCopy.size());
+        long stlEnd = System.currentTimeMillis();
+        if (!atomPath) {
+            workspaceTraceSize = historyCopy.size();
+        }
+        logger.info(String.format("MATLAB %s took %d ms (traceSize=%d%s)", label, (stlEnd - stlStart), historyCopy.size(),
+                atomPath ? ", atoms=" + atoms.program().atomCount() : ""));
+        evaluatedTraceSize = historyCopy.size();
+        evaluatedAtMillis = stlEnd;
+        double[][] rob = new double[][] { getDoubleArray("up_robM"), getDoubleArray("low_robM") };
+        if (rob[0] != null && rob[1] != null) {
+            lastRobustness = rob;
+        }
+        evalDuration.record((stlEnd - stlStart) * 1_000_000L);
+        evalRate.mark();
+        ColumnarTraceWriter ex = exporter;
+        if (ex != null) {
+            ex.offerRobustness(rob[0], rob[1]);
+        }
+        return rob;
+    }
+
+    /**
+     * MATLAB ワークスペースの trace に対して因果解析を行い、キャッシュを更新する。
+     * キャッシュが traceSize までカバーしていれば何もしない（ワークスペースの値も最新のまま）。
+     * matlabLock を保持し、trace が設定済みの状態で呼び出すこと。
+     */
+    private void ensureCausation(TraceHistory.Snapshot historyCopy, String reason) throws Exception {
+        int traceSize = historyCopy.size();
+        if (causationCache.covers(traceSize)) {
+            logger.fine(String.format("Causation cache hit (traceSize=%d, reason=%s)", traceSize, reason));
+            return;
+        }
+        ensureWorkspaceTrace(historyCopy);
+        long cauStart = System.currentTimeMillis();
+        matlabEval(BoundedMatlabEngine.Call.CAUSATION, CAUSATION_EVAL_CMD, traceSize);
+        long cauEnd = System.currentTimeMillis();
+        causationCache.update(getDoubleArray("up_optCau"), getDoubleArray("low_optCau"));
+        logger.info(String.format("MATLAB stl_causation_opt took %d ms (traceSize=%d, reason=%s)",
+                (cauEnd - cauStart), traceSize, reason));
+    }
+
+    /**
+     * 最新のロバストネス区間から判定の確定を検出し、新たに確定した場合は即座に sink へ通知する。
+     */
+    private void checkSettlement(double[][] rob, TraceHistory.Snapshot historyCopy) {
+        double[] up = rob[0];
+        double[] low = rob[1];
+        if (up == null || low == null || up.length == 0 || low.length == 0) return;
+        double sampleTime = historyCopy.lastRow()[0];
+        VerdictEvent event = verdictTracker.update(VERDICT_TAU, up[up.length - 1], low[low.length - 1],
+                sampleTime, historyCopy.size());
+        if (event == null) return;
+        try {
+            verdictSink.publish(event);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Verdict sink failed to publish " + event, e);
+        }
+    }
+
+    /**
+     * 判定確定イベントの通知先を設定する。以前の sink は close される。
+     * @param sink 通知先（null の場合はログ出力）
+     */
+    public void setVerdictSink(VerdictSink sink) {
+        VerdictSink old = this.verdictSink;
+        this.verdictSink = (sink != null) ? sink : new VerdictSinks.LogSink();
+        if (old != null && old != this.verdictSink) {
+            old.close();
+        }
+    }
+
+    public VerdictSink getVerdictSink() {
+        return verdictSink;
+    }
+
+    /**
+     * 確定済みの判定を返す（未確定なら null）。
+     */
+    public VerdictEvent getSettledVerdict() {
+        return verdictTracker.get(VERDICT_TAU);
+    }
+
+    /**
+     * 直前の評価から最新ロバストネス上限/下限の符号が変化したかを判定し、記録を更新する。
+     * matlabLock を保持した状態で呼び出すこと。
+     */
+    private boolean robustnessSignChanged(double up, double low) {
+        int upSign = signOf(up);
+        int lowSign = signOf(low);
+        boolean changed = (upSign != lastUpSign) || (lowSign != lastLowSign);
+        lastUpSign = upSign;
+        lastLowSign = lowSign;
+        return changed;
+    }
+
+    private static int signOf(double v) {
+        if (v > 0) return 1;
+        if (v < 0) return -1;
+        return 0;
+    }
+
+    /**
+     * 期限付きで MATLAB コマンドを実行する。期限切れの場合は実行途中のワークスペースの状態が
+     * 不明になるため、次に必要になったときに trace を設定し直す。
+     */
+    private void matlabEval(BoundedMatlabEngine.Call call, String command) throws Exception {
+        matlabEval(call, command, 0);
+    }
+
+    /**
+     * @param traceSize 呼び出しが対象とする時間ステップ数（期限の延長に使い、JFR の MatlabCall イベントに記録する）
+     */
+    private void matlabEval(BoundedMatlabEngine.Call call, String command, int traceSize) throws Exception {
+        PipelineEvents.MatlabCall event = new PipelineEvents.MatlabCall();
+        event.begin();
+        String outcome = "error";
+        try {
+            matlab.eval(call, command, traceSize);
+            outcome = "ok";
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            synchronized (matlabLock) {
+                workspaceTraceSize = -1;
+            }
+            throw e;
+        } catch (BoundedMatlabEngine.CircuitOpenException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.session = sessionName;
+                event.call = call.key();
+                event.outcome = outcome;
+                event.traceSize = traceSize;
+                event.bytes = command.length();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * MATLAB 変数を double 配列として取得する（n=1 の場合は Double が返るため型チェックする）。
+     */
+    private double[] getDoubleArray(String varName) throws Exception {
+        Object obj = matlab.getVariable(BoundedMatlabEngine.Call.VARIABLE, varName);
+        if (obj instanceof Double) {
+            return new double[] { (Double) obj };
+        }
+        return (double[]) obj;
+    }
+
     /**
      * TCPサーバーを非同期で起動する（HTTPサーバーから呼び出すことを想定）
      * @param port 待ち受けるTCPポート番号
@@ -396,67 +1106,41 @@ public class MonitoringTCPServer {
             return;
         }
         this.tcpPort = port;
-        startup();
-        serverSocket = new ServerSocket(tcpPort);
+        // 先にポートを確保する（使用中なら MATLAB を起動せずに失敗させる）
+        ServerSocket socket = new ServerSocket(tcpPort);
+        try {
+            startup();
+        } catch (Exception e) {
+            socket.close();
+            shutdown(); // 起動途中のエンジンを閉じる
+            throw e;
+        }
+        if (renderWorkerEnabled) {
+            // 描画用エンジンは別スレッドで起動する（起動するまで・失敗時は評価用エンジンで描画する）
+            RenderWorker rw = new RenderWorker(sessionName, cauMonPath, this::buildTraceScript,
+                    () -> visualizeIntervalMillis);
+            rw.start();
+            renderWorker = rw;
+        }
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "MonitoringTCP-DeferredEval");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        deferredEvalScheduler = scheduler;
+        serverSocket = socket;
         running = true;
+        openExporter();
 
         acceptThread = new Thread(() -> {
             logger.info("Server is listening on port " + tcpPort);
+            // 1セッションは1本のトレースなので、クライアントは1接続ずつ順に処理する
+            // （処理中に来た接続はバックログで待たされ、同時送信にはならない）
             while (running) {
                 try (Socket clientSocket = serverSocket.accept()) {
                     logger.info("Client connected from: " + clientSocket.getInetAddress());
-                    try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()))) {
-                        String rawLine;
-                        while ((rawLine = in.readLine()) != null) {
-                            // trim と空行チェック
-                            String line = rawLine.trim();
-                            if (line.isEmpty()) {
-                                logger.fine("Skipping empty/whitespace line from client.");
-                                continue;
-                            }
-                            // 先頭にプレフィックスがある場合、数字から始まる部分を抽出
-                            int idx = -1;
-                            for (int i = 0; i < line.length(); i++) {
-                                char c = line.charAt(i);
-                                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.') {
-                                    idx = i;
-                                    break;
-                                }
-                            }
-                            if (idx > 0) {
-                                line = line.substring(idx).trim();
-                            }
-                            if (line.isEmpty()) {
-                                logger.fine("Skipping line after stripping prefix: '" + rawLine + "'");
-                                continue;
-                            }
-
-                            logger.info("Received data: " + line);
-
-                            // カンマで分割した後、空トークンを削除してからパース
-                            String[] rawParts = line.split(",");
-                            List<String> partsList = new ArrayList<>();
-                            for (String p : rawParts) {
-                                if (p == null) continue;
-                                String t = p.trim();
-                                if (!t.isEmpty()) partsList.add(t);
-                            }
-                            if (partsList.size() < 2) { // 少なくとも time と 1 signal を期待
-                                logger.warning("Received malformed data: " + rawLine);
-                                continue;
-                            }
-
-                            try {
-                                double[] newData = new double[partsList.size()];
-                                for (int i = 0; i < partsList.size(); i++) {
-                                    newData[i] = Double.parseDouble(partsList.get(i));
-                                }
-                                onNewDataReceived(newData);
-                            } catch (NumberFormatException e) {
-                                logger.warning("Failed to parse data to double: " + rawLine);
-                            }
-                        }
-                    }
+                    handleClient(clientSocket);
                     logger.info("Client disconnected.");
                     finalizeVisualizationAndSave(buildTimestampedFilename());
                 } catch (IOException e) {
@@ -474,6 +1158,167 @@ public class MonitoringTCPServer {
         acceptThread.start();
     }
 
+    /**
+     * 1クライアント分の受信ループ。先頭4バイトが {@link #BINARY_MAGIC} ならバイナリ形式、
+     * それ以外はテキスト形式（"time,signal1,signal2,..." の行）として読み取る。
+     * バイナリ形式: MAGIC(4バイト) + 列数(int32, time を含む) + サンプルごとに列数分の float64（ビッグエンディアン）
+     * 応答モードでは、同じ接続にサンプルごとのロバストネスを {@link RobustnessAckChannel} で返す。
+     */
+    private void handleClient(Socket clientSocket) throws IOException {
+        BufferedInputStream raw = new BufferedInputStream(clientSocket.getInputStream());
+        raw.mark(BINARY_MAGIC.length);
+        byte[] head = raw.readNBytes(BINARY_MAGIC.length);
+        raw.reset();
+        boolean binary = Arrays.equals(head, BINARY_MAGIC);
+        RobustnessAckChannel ack = null;
+        if (ackEnabled) {
+            // 応答はクライアントの送信形式に合わせる
+            ack = new RobustnessAckChannel(clientSocket, binary, javaTraceHistory.size(), ackLatency);
+            ackChannel = ack;
+        }
+        try {
+            if (binary) {
+                handleBinaryClient(new DataInputStream(raw));
+            } else {
+                handleTextClient(raw);
+            }
+        } finally {
+            if (ack != null) {
+                acknowledgeRemaining(ack);
+                ackChannel = null;
+                ack.close(ACK_CLOSE_TIMEOUT_MILLIS);
+                ackedTotal += ack.acked();
+                ackDroppedTotal += ack.dropped();
+                logger.info("Ack channel closed (" + ack + ", latency " + ackLatency + ")");
+            }
+        }
+    }
+
+    /**
+     * 受信終了時に、まだ評価されていないサンプルを評価して応答する。
+     */
+    private void acknowledgeRemaining(RobustnessAckChannel ack) {
+        if (ack.pending() == 0 || matlabEngine == null) return;
+        VerdictEvent settledVerdict = verdictTracker.get(VERDICT_TAU);
+        if (settledVerdict != null) {
+            ack.acknowledgeSettled(settledVerdict);
+            return;
+        }
+        TraceHistory.Snapshot historyCopy = snapshotHistory();
+        synchronized (matlabLock) {
+            try {
+                double[][] rob = evaluateRobustness(historyCopy, "stl_eval (ack flush)");
+                checkSettlement(rob, historyCopy);
+                ack.acknowledge(rob[0], rob[1]);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to evaluate remaining samples for ack", e);
+            }
+        }
+    }
+
+    /**
+     * テキスト形式（"time,signal1,signal2,..." の行）の受信ループ。
+     */
+    private void handleTextClient(BufferedInputStream raw) throws IOException {
+        // ソケットは呼び出し側で閉じる（応答モードでは受信終了後も応答を書き込むため、ここでは閉じない）
+        BufferedReader in = new BufferedReader(new InputStreamReader(raw));
+        String rawLine;
+        while ((rawLine = in.readLine()) != null) {
+            PipelineEvents.Parse parseEvent = new PipelineEvents.Parse();
+            parseEvent.begin();
+            // trim と空行チェック
+            String line = rawLine.trim();
+            if (line.isEmpty()) {
+                logger.fine("Skipping empty/whitespace line from client.");
+                continue;
+            }
+            // 先頭にプレフィックスがある場合、数字から始まる部分を抽出
+            int idx = -1;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.') {
+                    idx = i;
+                    break;
+                }
+            }
+            if (idx > 0) {
+                line = line.substring(idx).trim();
+            }
+            if (line.isEmpty()) {
+                logger.fine("Skipping line after stripping prefix: '" + rawLine + "'");
+                continue;
+            }
+
+            // 高レートでの受信時にログ出力が律速にならないよう fine レベルにする
+            logger.fine("Received data: " + line);
+
+            // カンマで分割した後、空トークンを削除してからパース
+            String[] rawParts = line.split(",");
+            List<String> partsList = new ArrayList<>();
+            for (String p : rawParts) {
+                if (p == null) continue;
+                String t = p.trim();
+                if (!t.isEmpty()) partsList.add(t);
+            }
+            if (partsList.size() < 2) { // 少なくとも time と 1 signal を期待
+                logger.warning("Received malformed data: " + rawLine);
+                continue;
+            }
+
+            try {
+                double[] newData = new double[partsList.size()];
+                for (int i = 0; i < partsList.size(); i++) {
+                    newData[i] = Double.parseDouble(partsList.get(i));
+                }
+                parseEvent.end();
+                if (parseEvent.shouldCommit()) {
+                    parseEvent.session = sessionName;
+                    parseEvent.format = "text";
+                    parseEvent.bytes = rawLine.length() + 1;
+                    parseEvent.columns = newData.length;
+                    parseEvent.commit();
+                }
+                onNewDataReceived(newData);
+            } catch (NumberFormatException e) {
+                logger.warning("Failed to parse data to double: " + rawLine);
+            }
+        }
+    }
+
+    private void handleBinaryClient(DataInputStream din) throws IOException {
+        // ソケットは呼び出し側で閉じる（応答モードでは受信終了後も応答を書き込むため、ここでは閉じない）
+        din.readFully(new byte[BINARY_MAGIC.length]);
+        int width = din.readInt();
+        if (width < 2 || width > MAX_BINARY_COLUMNS) { // 少なくとも time と 1 signal を期待
+            logger.warning("Rejecting binary stream with invalid column count: " + width);
+            return;
+        }
+        logger.info("Binary stream started (columns=" + width + ")");
+        while (true) {
+            double[] newData = new double[width];
+            try {
+                newData[0] = din.readDouble();
+            } catch (EOFException eof) {
+                break;
+            }
+            // 受信待ちの時間を含めないよう、先頭の値を読んでから計測する
+            PipelineEvents.Parse parseEvent = new PipelineEvents.Parse();
+            parseEvent.begin();
+            for (int i = 1; i < width; i++) {
+                newData[i] = din.readDouble();
+            }
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.session = sessionName;
+                parseEvent.format = "binary";
+                parseEvent.bytes = (long) width * Double.BYTES;
+                parseEvent.columns = width;
+                parseEvent.commit();
+            }
+            onNewDataReceived(newData);
+        }
+    }
+
     /**
      * TCPサーバーを停止する（HTTPサーバーから呼び出すことを想定）
      */
@@ -499,6 +1344,7 @@ public class MonitoringTCPServer {
         }
 
         finalizeVisualizationAndSave(buildTimestampedFilename());
+        closeExporter();
 
         shutdown(); // MATLAB 停止
         logger.info("Monitoring TCP server stopped.");
@@ -516,64 +1362,111 @@ public class MonitoringTCPServer {
         if (outfile == null || outfile.isEmpty()) {
             outfile = buildTimestampedFilename();
         }
-        int numTimeSteps;
-        int numSignals;
-        synchronized (javaTraceHistory) {
-            numTimeSteps = javaTraceHistory.size();
-            numSignals = (numTimeSteps > 0) ? javaTraceHistory.get(0).length : 0;
-        }
-        if (numTimeSteps == 0 || numSignals == 0) {
+        TraceHistory.Snapshot historyCopy = snapshotHistory();
+        if (historyCopy.size() == 0 || historyCopy.width() == 0) {
             logger.info("No trace data available for final visualization.");
             return;
         }
-
-        double[][] historyCopy = new double[numTimeSteps][numSignals];
-        synchronized (javaTraceHistory) {
-            for (int t = 0; t < numTimeSteps; t++) {
-                double[] row = javaTraceHistory.get(t);
-                System.arraycopy(row, 0, historyCopy[t], 0, numSignals);
+        int numTimeSteps = historyCopy.size();
+
+        PipelineEvents.FinalSave event = new PipelineEvents.FinalSave();
+        event.begin();
+        boolean succeeded = false;
+        long saveStart = System.currentTimeMillis();
+        RenderWorker.Frame frame = null;
+        synchronized (matlabLock) {
+            try {
+                // 最終評価実行（保存するグラフには全区間の因果解析を含める）
+                checkSettlement(evaluateRobustness(historyCopy, "stl_eval (final)"), historyCopy);
+                ensureCausation(historyCopy, "final save");
+                frame = new RenderWorker.Frame(historyCopy, lastRobustness[0], lastRobustness[1],
+                        causationCache.snapshot(), outfile);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error during final evaluation", e);
             }
         }
 
-        StringBuilder evalBuilder = new StringBuilder();
-        evalBuilder.append("trace = [");
-        for (int s = 0; s < numSignals; s++) {
-            for (int t = 0; t < numTimeSteps; t++) {
-                evalBuilder.append(historyCopy[t][s]);
-                if (t < numTimeSteps - 1) {
-                    evalBuilder.append(" ");
+        // 保存付きの描画は描画ワーカーに優先して依頼する（実行中の描画より先に処理される）
+        RenderWorker rw = activeRenderWorker();
+        if (frame != null && rw != null) {
+            try {
+                succeeded = rw.save(frame, BoundedMatlabEngine.Call.VISUALIZE.defaultTimeoutMillis);
+                if (!succeeded) {
+                    logger.warning("Render worker could not save " + outfile + "; saving on the evaluation engine.");
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            if (s < numSignals - 1) {
-                evalBuilder.append("; ");
+        }
+        if (frame != null && !succeeded) {
+            synchronized (matlabLock) {
+                try {
+                    ensureWorkspaceTrace(historyCopy);
+
+                    // 可視化＋保存用の呼び出し（MATLAB 側で必要に応じて exportgraphics を実装する想定）
+                    String safeOutfile = outfile.replace("'", "''");
+                    matlabEval(BoundedMatlabEngine.Call.VISUALIZE,
+                            "visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '" + safeOutfile + "', signal_str);\n",
+                            numTimeSteps);
+                    succeeded = true;
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Error during final visualization/save", e);
+                }
             }
         }
-        evalBuilder.append("];\n");
-        evalBuilder.append("signal_str = '").append(signalStr).append("';\n");
-        evalBuilder.append("phi_str = '").append(phiStr).append("';\n");
-        evalBuilder.append("tau = 0;\n");
-        evalBuilder.append("[up_robM, low_robM] = stl_eval_mex_pw(signal_str, phi_str, trace, tau);\n");
-
-        evalBuilder.append("[up_optCau, low_optCau] = stl_causation_opt(signal_str, phi_str, trace, tau);\n");
-
-        try {
-            // 最終評価実行
-            long saveStart = System.currentTimeMillis();
-            matlabEngine.eval(evalBuilder.toString());
-
-            // 可視化＋保存用の呼び出し（MATLAB 側で必要に応じて exportgraphics を実装する想定）
-            String safeOutfile = outfile.replace("'", "''");
-            matlabEngine.eval("visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '" + safeOutfile + "', signal_str);\n");
+        if (succeeded) {
             long saveEnd = System.currentTimeMillis();
             logger.info(String.format("Final visualize (with save) took %d ms (traceSize=%d)", (saveEnd - saveStart), numTimeSteps));
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error during final visualization/save", e);
+            logger.info("Trace history: " + javaTraceHistory.stats());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.session = sessionName;
+            event.traceSize = numTimeSteps;
+            event.outfile = outfile;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    /**
+     * 設定に応じて列指向ファイルの書き出しを開始する（PNG と同じ experiment フォルダ、無ければカレント）。
+     */
+    private void openExporter() {
+        String mode = exportMode;
+        if (mode == null) return;
+        Path dir = Paths.get(cauMonPath, "experiment");
+        if (!Files.isDirectory(dir)) dir = Paths.get(cauMonPath);
+        Path file = dir.resolve(buildTimestampedFilename().replace("result_", "trace_").replace(".png", ".cmc"));
+        try {
+            ColumnarTraceWriter ex = new ColumnarTraceWriter(file, "stream".equals(mode), javaTraceHistory, causationCache,
+                    signalStr.split(","));
+            exporter = ex;
+            logger.info("Exporting trace and robustness to " + ex.file() + " (mode=" + mode + ")");
+        } catch (IOException e) {
+            exporter = null;
+            logger.log(Level.WARNING, "Cannot create columnar export " + file + "; export disabled", e);
         }
     }
 
+    /**
+     * 残りを書き出して列指向ファイルを閉じる。最終評価の後に呼び出すこと。
+     */
+    private void closeExporter() {
+        ColumnarTraceWriter ex = exporter;
+        if (ex == null) return;
+        ex.close(EXPORT_CLOSE_TIMEOUT_MILLIS);
+        logger.info("Columnar export written: " + ex);
+    }
+
+    /**
+     * 保存するグラフのファイル名（result_セッション名_日時.png）。同じ JVM で同時に動く複数セッションが
+     * 互いのファイルを上書きしないよう、セッション名を含める（ファイル名に使えない文字は '_' にする）。
+     */
     private String buildTimestampedFilename() {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy_MM_dd_HHmmss");
-        return String.format("result_%s.png", LocalDateTime.now().format(formatter));
+        String session = sessionName.replaceAll("[^A-Za-z0-9_-]", "_");
+        return String.format("result_%s_%s.png", session, LocalDateTime.now().format(formatter));
     }
 
     // TCPサーバーを実行する main メソッド
@@ -0,0 +1,187 @@
+package org.CauMon;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 監視パイプラインの各段階の JDK Flight Recorder イベント。
+ * 記録していない間は begin() / commit() が何もしないため、本番ビルドに残してよい。
+ * 記録の開始・停止は {@link FlightRecording}（HTTP の /jfr/start, /jfr/stop）で行う。
+ */
+final class PipelineEvents {
+
+    static final String PREFIX = "org.CauMon.";
+    static final String CATEGORY = "CauMon";
+
+    private PipelineEvents() {}
+
+    /**
+     * 受信した1サンプル分のパース（テキスト行の分割・数値変換、バイナリの読み出し）。
+     */
+    @Name(PREFIX + "Parse")
+    @Label("Sample Parse")
+    @Category({CATEGORY, "Ingest"})
+    @Description("Parsing of one received sample")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Format")
+        String format;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Columns")
+        int columns;
+    }
+
+    /**
+     * 受信履歴のロック区間（ロック待ちを含む append / snapshot）。
+     */
+    @Name(PREFIX + "HistoryLock")
+    @Label("Trace History Lock")
+    @Category({CATEGORY, "Ingest"})
+    @Description("Append to or snapshot of the trace history, including time waiting for its lock")
+    @StackTrace(false)
+    static final class HistoryLock extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Trace Size")
+        int traceSize;
+    }
+
+    /**
+     * MATLAB に渡す trace / atom_trace スクリプト文字列の構築。
+     */
+    @Name(PREFIX + "TraceBuild")
+    @Label("Trace Script Build")
+    @Category({CATEGORY, "Evaluation"})
+    @Description("Building the MATLAB script that sets trace or atom_trace")
+    @StackTrace(false)
+    static final class TraceBuild extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Variable")
+        String variable;
+
+        @Label("Trace Size")
+        int traceSize;
+
+        @Label("Script Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * MATLAB エンジン呼び出し（stl_eval_mex_pw, stl_causation_opt, visualize など）。
+     */
+    @Name(PREFIX + "MatlabCall")
+    @Label("MATLAB Call")
+    @Category({CATEGORY, "Evaluation"})
+    @Description("One MATLAB engine call, labelled by call kind")
+    @StackTrace(false)
+    static final class MatlabCall extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Call")
+        String call;
+
+        @Label("Outcome")
+        @Description("ok, timeout, error or rejected")
+        String outcome;
+
+        @Label("Trace Size")
+        int traceSize;
+
+        @Label("Command Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * onNewDataReceived のうち評価・可視化を行った1回分。
+     */
+    @Name(PREFIX + "Evaluation")
+    @Label("Evaluation")
+    @Category({CATEGORY, "Evaluation"})
+    @Description("Robustness evaluation and/or visualization triggered by a received sample")
+    @StackTrace(false)
+    static final class Evaluation extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Trace Size")
+        int traceSize;
+
+        @Label("STL Evaluated")
+        boolean stlEval;
+
+        @Label("Visualized")
+        boolean visualize;
+
+        @Label("Atoms In Java")
+        boolean atoms;
+    }
+
+    /**
+     * 描画ワーカーによる visualize の1回分（描画用エンジン上）。
+     */
+    @Name(PREFIX + "Render")
+    @Label("Render")
+    @Category({CATEGORY, "Rendering"})
+    @Description("One visualize call on the render engine, drawing the latest published snapshot")
+    @StackTrace(false)
+    static final class Render extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Trace Size")
+        int traceSize;
+
+        @Label("Snapshots Skipped")
+        @Description("Stale snapshots replaced before they were drawn")
+        long skipped;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Save")
+        boolean save;
+    }
+
+    /**
+     * 最終評価・因果解析・保存付き描画。
+     */
+    @Name(PREFIX + "FinalSave")
+    @Label("Final Visualization")
+    @Category({CATEGORY, "Evaluation"})
+    @Description("Final evaluation, causation and visualization with save")
+    @StackTrace(false)
+    static final class FinalSave extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Trace Size")
+        int traceSize;
+
+        @Label("Output File")
+        String outfile;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+}
@@ -0,0 +1,60 @@
+package org.CauMon;
+
+import java.util.Locale;
+
+/**
+ * 直近 10 秒間の発生回数から毎秒の処理レートを求める。件数は全期間で集計する。
+ */
+final class RateMeter {
+
+    static final long WINDOW_NANOS = 10_000_000_000L;
+    private static final int CAPACITY = 4096;
+
+    private final long[] ring = new long[CAPACITY];
+    private int next = 0;
+    private int filled = 0;
+    private long count = 0;
+    private long firstNanos = 0;
+
+    synchronized void mark() {
+        long now = System.nanoTime();
+        if (count == 0) firstNanos = now;
+        ring[next] = now;
+        next = (next + 1) % ring.length;
+        if (filled < ring.length) filled++;
+        count++;
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    /**
+     * 直近の窓（開始から 10 秒未満なら開始から）での毎秒の発生回数。
+     */
+    synchronized double perSecond() {
+        if (count == 0) return 0.0;
+        long now = System.nanoTime();
+        int n = 0;
+        long oldest = now;
+        for (int i = 0; i < filled; i++) {
+            long t = ring[i];
+            if (now - t <= WINDOW_NANOS) {
+                n++;
+                if (t < oldest) oldest = t;
+            }
+        }
+        // 窓内に収まりきらない（容量超え）場合は、保持している最古の時刻からの区間で割る
+        long span = (n == ring.length) ? now - oldest : Math.min(WINDOW_NANOS, now - firstNanos);
+        return span <= 0 ? 0.0 : n * 1e9 / span;
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"count\":%d,\"perSec\":%.3f}", count(), perSecond());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "n=%d, %.2f/s", count(), perSecond());
+    }
+}
@@ -0,0 +1,313 @@
+package org.CauMon;
+
+import com.mathworks.engine.MatlabEngine;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 描画専用の MATLAB エンジンで visualize を実行するワーカー。
+ * 評価側は評価のたびに不変のスナップショット（{@link Frame}）を {@link #publish} で渡すだけで、
+ * ワーカーは常に最新のものだけを描画する（描画中に届いた古いスナップショットは捨てる）。
+ * これにより数秒かかる再描画と次のロバストネス評価が並行して進む。
+ *
+ * 描画用エンジンは別スレッドで非同期に起動する。起動するまで（{@link #isReady} が false の間）は
+ * 評価側がスナップショットを渡さず、従来どおり評価用エンジンで描画する。
+ */
+final class RenderWorker {
+
+    private static final Logger logger = Logger.getLogger(RenderWorker.class.getName());
+
+    private static final String VISUALIZE_CMD =
+            "visualize(trace, phi_str, up_robM, low_robM, up_optCau, low_optCau, '%s', signal_str);\n";
+
+    /**
+     * 描画に必要な評価結果のスナップショット。生成後は変更しない。
+     */
+    static final class Frame {
+        final TraceHistory.Snapshot trace;
+        final double[] upRob;
+        final double[] lowRob;
+        final double[] upCau;
+        final double[] lowCau;
+        // 保存先（実行中の描画更新のみなら null）
+        final String outfile;
+        final long createdNanos = System.nanoTime();
+        long seq;
+
+        Frame(TraceHistory.Snapshot trace, double[] upRob, double[] lowRob, double[][] causation, String outfile) {
+            this.trace = trace;
+            this.upRob = upRob != null ? upRob : new double[0];
+            this.lowRob = lowRob != null ? lowRob : new double[0];
+            this.upCau = causation[0];
+            this.lowCau = causation[1];
+            this.outfile = outfile;
+        }
+    }
+
+    private final String session;
+    private final String cauMonPath;
+    private final Function<TraceHistory.Snapshot, String> traceScript;
+    private final LongSupplier minIntervalMillis;
+    private final Thread thread;
+
+    private BoundedMatlabEngine engine;
+    private volatile boolean ready = false;
+    private volatile boolean failed = false;
+
+    // 最新の未描画スナップショット（1つだけ保持する）と保存要求
+    private Frame latest;
+    private Frame pendingSave;
+    private long nextSeq = 1;
+    private long savedSeq = 0;
+    // 成否にかかわらず描画を終えた保存要求の最大 seq
+    private long finishedSaveSeq = 0;
+    private boolean stopping = false;
+
+    private long published = 0;
+    private long skipped = 0;
+    private long failures = 0;
+    private final RateMeter renderRate = new RateMeter();
+    private final LatencyRecorder renderDuration = new LatencyRecorder();
+    // スナップショットの生成から描画完了まで（描画が評価にどれだけ遅れているか）
+    private final LatencyRecorder staleness = new LatencyRecorder();
+
+    /**
+     * @param session JFR イベントに記録するセッション名
+     * @param cauMonPath configure.m のあるフォルダ
+     * @param traceScript trace / signal_str / phi_str / tau を設定するスクリプトの構築
+     * @param minIntervalMillis 実行中の描画の最小間隔（ミリ秒、0 で描画が終わり次第次を描画）
+     */
+    RenderWorker(String session, String cauMonPath, Function<TraceHistory.Snapshot, String> traceScript,
+                 LongSupplier minIntervalMillis) {
+        this.session = session;
+        this.cauMonPath = cauMonPath;
+        this.traceScript = traceScript;
+        this.minIntervalMillis = minIntervalMillis;
+        thread = new Thread(this::run, "MonitoringTCP-Render");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** 描画用エンジンが起動済みか */
+    boolean isReady() {
+        return ready;
+    }
+
+    /** 描画用エンジンの起動に失敗したか（評価用エンジンで描画する） */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * 最新の評価結果を渡す。未描画のスナップショットがあれば置き換える（古いものは描画しない）。
+     */
+    synchronized void publish(Frame frame) {
+        if (latest != null) skipped++;
+        frame.seq = nextSeq++;
+        latest = frame;
+        published++;
+        notifyAll();
+    }
+
+    /**
+     * 保存付きの描画を要求し、完了まで待つ。
+     * 期限内にワーカーが取りかからなければ要求を取り消す。描画中に期限を過ぎた場合は、
+     * 呼び出し側が評価用エンジンで同じファイルを書かないよう、その描画が終わるまで待つ
+     * （各 MATLAB 呼び出しは {@link BoundedMatlabEngine} の期限で打ち切られる）。
+     * @return 保存できた場合 true（エンジン未起動・失敗、取り消し、描画失敗時は false）
+     */
+    boolean save(Frame frame, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            if (failed || stopping) return false;
+            frame.seq = nextSeq++;
+            pendingSave = frame;
+            notifyAll();
+            long remaining;
+            while (savedSeq < frame.seq && !failed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                wait(remaining);
+            }
+            if (pendingSave == frame) {
+                pendingSave = null;
+                return false;
+            }
+            if (finishedSaveSeq < frame.seq) {
+                logger.info("Render worker is still saving " + frame.outfile + "; waiting for it to finish.");
+                while (finishedSaveSeq < frame.seq) {
+                    wait();
+                }
+            }
+            return savedSeq >= frame.seq;
+        }
+    }
+
+    private void run() {
+        try {
+            startEngine();
+        } catch (Exception e) {
+            failed = true;
+            logger.log(Level.WARNING, "Failed to start render engine; visualize runs on the evaluation engine", e);
+            synchronized (this) {
+                notifyAll();
+            }
+            return;
+        }
+        long lastRenderMillis = 0L;
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                try {
+                    while (true) {
+                        if (stopping) return;
+                        if (pendingSave != null) break;
+                        if (latest != null) {
+                            long wait = lastRenderMillis + minIntervalMillis.getAsLong() - System.currentTimeMillis();
+                            if (wait <= 0) break;
+                            wait(wait);
+                        } else {
+                            wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (pendingSave != null) {
+                    frame = pendingSave;
+                    pendingSave = null;
+                } else {
+                    frame = latest;
+                    latest = null;
+                }
+            }
+            render(frame);
+            lastRenderMillis = System.currentTimeMillis();
+        }
+    }
+
+    private void startEngine() throws Exception {
+        logger.info("Starting render engine...");
+        Future<MatlabEngine> starting = MatlabEngine.startMatlabAsync();
+        MatlabEngine raw;
+        try {
+            raw = starting.get(BoundedMatlabEngine.Call.SETUP.defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            starting.cancel(true);
+            throw e;
+        }
+        engine = new BoundedMatlabEngine(raw);
+        engine.eval(BoundedMatlabEngine.Call.SETUP, "cd '" + cauMonPath + "'");
+        engine.eval(BoundedMatlabEngine.Call.SETUP, "configure");
+        engine.eval(BoundedMatlabEngine.Call.SETUP, "cd 'experiment'");
+        ready = true;
+        logger.info("Render engine started and configured.");
+    }
+
+    private void render(Frame frame) {
+        PipelineEvents.Render event = new PipelineEvents.Render();
+        event.begin();
+        String outcome = "error";
+        long start = System.nanoTime();
+        try {
+            engine.eval(BoundedMatlabEngine.Call.VISUALIZE, traceScript.apply(frame.trace));
+            engine.putVariable(BoundedMatlabEngine.Call.VARIABLE, "up_robM", frame.upRob);
+            engine.putVariable(BoundedMatlabEngine.Call.VARIABLE, "low_robM", frame.lowRob);
+            engine.putVariable(BoundedMatlabEngine.Call.VARIABLE, "up_optCau", frame.upCau);
+            engine.putVariable(BoundedMatlabEngine.Call.VARIABLE, "low_optCau", frame.lowCau);
+            String outfile = frame.outfile != null ? frame.outfile.replace("'", "''") : "";
+            engine.eval(BoundedMatlabEngine.Call.VISUALIZE, String.format(VISUALIZE_CMD, outfile));
+            long end = System.nanoTime();
+            renderDuration.record(end - start);
+            staleness.record(end - frame.createdNanos);
+            renderRate.mark();
+            outcome = "ok";
+            logger.fine(String.format("Render worker visualize took %.1f ms (traceSize=%d%s)",
+                    (end - start) / 1e6, frame.trace.size(), frame.outfile != null ? ", saved " + frame.outfile : ""));
+        } catch (BoundedMatlabEngine.CircuitOpenException e) {
+            outcome = "rejected";
+            logger.fine(e.getMessage());
+        } catch (Exception e) {
+            synchronized (this) {
+                failures++;
+            }
+            logger.log(Level.WARNING, "Render worker visualize failed (traceSize=" + frame.trace.size() + ")", e);
+        } finally {
+            if (frame.outfile != null) {
+                synchronized (this) {
+                    if ("ok".equals(outcome)) savedSeq = Math.max(savedSeq, frame.seq);
+                    finishedSaveSeq = Math.max(finishedSaveSeq, frame.seq);
+                    notifyAll();
+                }
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.session = session;
+                event.traceSize = frame.trace.size();
+                synchronized (this) {
+                    event.skipped = skipped;
+                }
+                event.outcome = outcome;
+                event.save = frame.outfile != null;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * ワーカーを止めて描画用エンジンを閉じる。
+     */
+    void stop(long timeoutMillis) {
+        synchronized (this) {
+            stopping = true;
+            notifyAll();
+        }
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warning("Render worker did not stop within " + timeoutMillis + " ms.");
+        }
+        BoundedMatlabEngine e = engine;
+        if (e != null) {
+            try {
+                e.engine().close();
+                logger.info("Render engine shut down (" + this + ")");
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Error shutting down render engine", ex);
+            }
+        }
+    }
+
+    String toJson() {
+        long pub;
+        long skip;
+        long fail;
+        synchronized (this) {
+            pub = published;
+            skip = skipped;
+            fail = failures;
+        }
+        BoundedMatlabEngine e = engine;
+        return "{\"worker\":true,\"ready\":" + ready + ",\"failed\":" + failed
+                + ",\"published\":" + pub + ",\"skipped\":" + skip + ",\"failures\":" + fail
+                + ",\"rate\":" + renderRate.toJson()
+                + ",\"durationMs\":" + renderDuration.toJson()
+                + ",\"stalenessMs\":" + staleness.toJson()
+                + ",\"matlab\":" + (e != null ? e.toJson() : "null") + "}";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "published=" + published + ", rendered=" + renderRate.count() + ", skipped=" + skipped
+                + ", duration " + renderDuration + ", staleness " + staleness;
+    }
+}
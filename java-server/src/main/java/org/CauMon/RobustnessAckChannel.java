@@ -0,0 +1,253 @@
+package org.CauMon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 受信と同じ TCP 接続で、サンプルごとのロバストネスをクライアントへ返す応答チャネル。
+ * レコードは [time, up_rob, low_rob, settled] で、クライアントの送信形式に合わせて
+ * テキスト（"time,up,low,settled\n"、settled は 0/1）または
+ * バイナリ（float64 × 4、ビッグエンディアン、settled は 0.0/1.0）で書き込む。
+ *
+ * 評価スレッドはレコードをリングバッファに積むだけで、ソケットへの書き込みは専用スレッドが
+ * 溜まったレコードをまとめて 1 回の write で行う。クライアントの読み出しが遅くバッファが
+ * 溢れた場合は古いレコードから捨てるため、評価スレッドがブロックされることはない。
+ */
+final class RobustnessAckChannel {
+
+    private static final Logger logger = Logger.getLogger(RobustnessAckChannel.class.getName());
+
+    static final int DEFAULT_CAPACITY = 65536;
+    private static final int BINARY_RECORD_BYTES = 4 * Double.BYTES;
+
+    private final OutputStream out;
+    private final boolean binary;
+    private final LatencyRecorder latency;
+    private final Thread writer;
+
+    // 応答待ちのサンプル（受信順）。先頭のグローバルインデックスが nextIndex
+    private double[] pendingTimes = new double[1024];
+    private long[] pendingNanos = new long[1024];
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+    private int nextIndex;
+
+    // 書き込み待ちのレコード（リングバッファ）
+    private final double[] qTime;
+    private final double[] qUp;
+    private final double[] qLow;
+    private final boolean[] qSettled;
+    private final long[] qIngestNanos;
+    private int qHead = 0;
+    private int qCount = 0;
+
+    private long acked = 0;
+    private long dropped = 0;
+    private boolean closing = false;
+
+    /**
+     * @param socket クライアントソケット（TCP_NODELAY を設定する）
+     * @param binary バイナリ形式で応答するか
+     * @param baseIndex この接続の最初のサンプルの履歴上のインデックス
+     * @param latency 受信から応答書き込みまでのレイテンシの記録先
+     */
+    RobustnessAckChannel(Socket socket, boolean binary, int baseIndex, LatencyRecorder latency) throws IOException {
+        this(socket, binary, baseIndex, latency, DEFAULT_CAPACITY);
+    }
+
+    RobustnessAckChannel(Socket socket, boolean binary, int baseIndex, LatencyRecorder latency, int capacity)
+            throws IOException {
+        socket.setTcpNoDelay(true);
+        this.out = socket.getOutputStream();
+        this.binary = binary;
+        this.nextIndex = baseIndex;
+        this.latency = latency;
+        int cap = Math.max(1, capacity);
+        qTime = new double[cap];
+        qUp = new double[cap];
+        qLow = new double[cap];
+        qSettled = new boolean[cap];
+        qIngestNanos = new long[cap];
+        writer = new Thread(this::writeLoop, "MonitoringTCP-AckWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * サンプルを受信したときに呼び出し、応答待ちとして登録する。
+     */
+    synchronized void onIngest(double time, long ingestNanos) {
+        if (pendingCount == pendingTimes.length) {
+            int n = pendingTimes.length * 2;
+            double[] t = new double[n];
+            long[] ns = new long[n];
+            for (int i = 0; i < pendingCount; i++) {
+                int k = (pendingHead + i) % pendingTimes.length;
+                t[i] = pendingTimes[k];
+                ns[i] = pendingNanos[k];
+            }
+            pendingTimes = t;
+            pendingNanos = ns;
+            pendingHead = 0;
+        }
+        int tail = (pendingHead + pendingCount) % pendingTimes.length;
+        pendingTimes[tail] = time;
+        pendingNanos[tail] = ingestNanos;
+        pendingCount++;
+    }
+
+    synchronized int pending() {
+        return pendingCount;
+    }
+
+    /**
+     * ロバストネス評価結果で応答待ちのサンプルに応答する。
+     * 評価はオンライン型のため、インデックス i の値は i 番目のサンプルの時点の結果である。
+     * @param up up_robM（履歴の先頭からの全長）
+     * @param low low_robM
+     */
+    synchronized void acknowledge(double[] up, double[] low) {
+        if (up == null || low == null) return;
+        int n = Math.min(up.length, low.length);
+        while (pendingCount > 0 && nextIndex < n) {
+            double u = up[nextIndex];
+            double l = low[nextIndex];
+            enqueue(pendingTimes[pendingHead], u, l, VerdictTracker.isDecided(u, l), pendingNanos[pendingHead]);
+            popPending();
+        }
+        notifyAll();
+    }
+
+    /**
+     * 判定確定後のサンプルに、確定時のロバストネスで即座に応答する（確定後は再評価しないため）。
+     */
+    synchronized void acknowledgeSettled(VerdictEvent verdict) {
+        while (pendingCount > 0) {
+            enqueue(pendingTimes[pendingHead], verdict.getUpRob(), verdict.getLowRob(), true, pendingNanos[pendingHead]);
+            popPending();
+        }
+        notifyAll();
+    }
+
+    private void popPending() {
+        pendingHead = (pendingHead + 1) % pendingTimes.length;
+        pendingCount--;
+        nextIndex++;
+    }
+
+    private void enqueue(double time, double up, double low, boolean settled, long ingestNanos) {
+        if (qCount == qTime.length) {
+            // 読み出しが追いつかない: 最も古いレコードを捨てる
+            qHead = (qHead + 1) % qTime.length;
+            qCount--;
+            dropped++;
+        }
+        int tail = (qHead + qCount) % qTime.length;
+        qTime[tail] = time;
+        qUp[tail] = up;
+        qLow[tail] = low;
+        qSettled[tail] = settled;
+        qIngestNanos[tail] = ingestNanos;
+        qCount++;
+    }
+
+    private void writeLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(BINARY_RECORD_BYTES * 256);
+        StringBuilder text = new StringBuilder();
+        long[] ingest = new long[256];
+        try {
+            while (true) {
+                int n;
+                synchronized (this) {
+                    while (qCount == 0 && !closing) {
+                        wait();
+                    }
+                    if (qCount == 0) return;
+                    n = qCount;
+                    if (ingest.length < n) ingest = new long[Math.max(n, ingest.length * 2)];
+                    if (binary) {
+                        if (buf.capacity() < n * BINARY_RECORD_BYTES) {
+                            buf = ByteBuffer.allocate(Math.max(n * BINARY_RECORD_BYTES, buf.capacity() * 2));
+                        }
+                        buf.clear();
+                    } else {
+                        text.setLength(0);
+                    }
+                    for (int i = 0; i < n; i++) {
+                        int k = (qHead + i) % qTime.length;
+                        if (binary) {
+                            buf.putDouble(qTime[k]).putDouble(qUp[k]).putDouble(qLow[k]).putDouble(qSettled[k] ? 1.0 : 0.0);
+                        } else {
+                            text.append(qTime[k]).append(',').append(qUp[k]).append(',').append(qLow[k])
+                                .append(',').append(qSettled[k] ? '1' : '0').append('\n');
+                        }
+                        ingest[i] = qIngestNanos[k];
+                    }
+                    qHead = (qHead + n) % qTime.length;
+                    qCount = 0;
+                }
+                // ソケットへの書き込みはロックの外で行う（ブロックしても評価スレッドに影響しない）
+                if (binary) {
+                    out.write(buf.array(), 0, buf.position());
+                } else {
+                    out.write(text.toString().getBytes(StandardCharsets.US_ASCII));
+                }
+                out.flush();
+                long now = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    latency.record(now - ingest[i]);
+                }
+                synchronized (this) {
+                    acked += n;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Ack channel write failed (client closed?)", e);
+            synchronized (this) {
+                dropped += qCount;
+                qCount = 0;
+            }
+        }
+    }
+
+    synchronized long acked() {
+        return acked;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * 書き込み待ちのレコードを送り切ってから書き込みスレッドを終了する。
+     * @param timeoutMillis 送り切るまで待つ最大時間
+     */
+    void close(long timeoutMillis) {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warning("Ack writer did not finish within " + timeoutMillis + " ms; remaining records are discarded.");
+            writer.interrupt();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "acked=" + acked + ", dropped=" + dropped + ", pending=" + pendingCount + ", format=" + (binary ? "binary" : "text")
+                + ", queued=" + qCount + "/" + qTime.length;
+    }
+}
@@ -0,0 +1,340 @@
+package org.CauMon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * 受信した [time, signal1, signal2, ...] の履歴を列指向のブロックで保持する。
+ * 直近のブロックは非圧縮のまま保持し、古いブロックは {@link GorillaCodec} で圧縮（封印）する。
+ * 読み出しは {@link #snapshot()} で得たスナップショットから列単位・行単位にストリーミングで行い、
+ * 履歴全体を double[][] に展開しない。
+ */
+final class TraceHistory {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024;
+    static final int DEFAULT_HOT_BLOCKS = 2;
+
+    private final int blockSize;
+    private final int hotBlocks;
+
+    // 確定済み（満杯）ブロック。古い順。先頭側から順に圧縮ブロックに置き換わる
+    private final List<Block> blocks = new ArrayList<>();
+    private int firstRawBlock = 0;
+    // 書き込み中のブロック（列指向）
+    private double[][] active;
+    private int activeCount = 0;
+    private int width = -1;
+    private int size = 0;
+    private long compressedBytes = 0;
+    private int sealedRows = 0;
+
+    private final AtomicLong decodedValues = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+
+    TraceHistory() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_HOT_BLOCKS);
+    }
+
+    /**
+     * @param blockSize 1ブロックあたりの行数
+     * @param hotBlocks 非圧縮のまま保持する直近の満杯ブロック数
+     */
+    TraceHistory(int blockSize, int hotBlocks) {
+        this.blockSize = Math.max(2, blockSize);
+        this.hotBlocks = Math.max(0, hotBlocks);
+    }
+
+    /**
+     * 1行追加する。最初の行で列数が決まり、以降は同じ列数の行のみ受け付ける。
+     * @throws IllegalArgumentException 列数が異なる場合
+     */
+    synchronized void append(double[] row) {
+        if (width < 0) {
+            if (row.length == 0) throw new IllegalArgumentException("Empty row");
+            width = row.length;
+            active = new double[width][blockSize];
+        } else if (row.length != width) {
+            throw new IllegalArgumentException("Expected " + width + " columns but got " + row.length);
+        }
+        for (int c = 0; c < width; c++) {
+            active[c][activeCount] = row[c];
+        }
+        activeCount++;
+        size++;
+        if (activeCount == blockSize) {
+            blocks.add(new RawBlock(active, activeCount));
+            active = new double[width][blockSize];
+            activeCount = 0;
+            sealOldBlocks();
+        }
+    }
+
+    /**
+     * 直近 hotBlocks 個より古い非圧縮ブロックを圧縮する。
+     */
+    private void sealOldBlocks() {
+        while (blocks.size() - firstRawBlock > hotBlocks) {
+            RawBlock raw = (RawBlock) blocks.get(firstRawBlock);
+            SealedBlock sealed = SealedBlock.seal(raw);
+            blocks.set(firstRawBlock, sealed);
+            compressedBytes += sealed.sizeBytes();
+            sealedRows += sealed.count;
+            firstRawBlock++;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 列数（time を含む）。まだ行が無ければ 0。
+     */
+    synchronized int width() {
+        return Math.max(width, 0);
+    }
+
+    synchronized void clear() {
+        blocks.clear();
+        firstRawBlock = 0;
+        active = null;
+        activeCount = 0;
+        width = -1;
+        size = 0;
+        compressedBytes = 0;
+        sealedRows = 0;
+    }
+
+    /**
+     * 現時点の履歴の読み取り専用ビューを返す。ブロックは共有し、書き込み中ブロックのみ複製する。
+     */
+    synchronized Snapshot snapshot() {
+        double[][] activeCopy = new double[Math.max(width, 0)][];
+        for (int c = 0; c < activeCopy.length; c++) {
+            activeCopy[c] = Arrays.copyOf(active[c], activeCount);
+        }
+        List<Block> view = new ArrayList<>(blocks);
+        if (activeCount > 0) {
+            view.add(new RawBlock(activeCopy, activeCount));
+        }
+        return new Snapshot(Collections.unmodifiableList(view), Math.max(width, 0), size);
+    }
+
+    /**
+     * 圧縮率とデコード性能の統計
+     */
+    synchronized Stats stats() {
+        return new Stats(size, width(), sealedRows, compressedBytes, decodedValues.get(), decodeNanos.get());
+    }
+
+    static final class Stats {
+        final int rows;
+        final int width;
+        final int sealedRows;
+        final long compressedBytes;
+        final long decodedValues;
+        final long decodeNanos;
+
+        Stats(int rows, int width, int sealedRows, long compressedBytes, long decodedValues, long decodeNanos) {
+            this.rows = rows;
+            this.width = width;
+            this.sealedRows = sealedRows;
+            this.compressedBytes = compressedBytes;
+            this.decodedValues = decodedValues;
+            this.decodeNanos = decodeNanos;
+        }
+
+        /** 圧縮済み区間の圧縮率（非圧縮サイズ / 圧縮後サイズ）。圧縮済み区間が無ければ 0 */
+        double compressionRatio() {
+            return compressedBytes == 0 ? 0.0 : (double) sealedRows * width * Double.BYTES / compressedBytes;
+        }
+
+        /** 圧縮ブロックのデコード性能（百万値/秒）。デコード実績が無ければ 0 */
+        double decodeMillionValuesPerSec() {
+            return decodeNanos == 0 ? 0.0 : decodedValues * 1000.0 / decodeNanos;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"rows\":%d,\"sealedRows\":%d,\"compressedBytes\":%d,\"compressionRatio\":%.3f,\"decodeMValuesPerSec\":%.3f}",
+                    rows, sealedRows, compressedBytes, compressionRatio(), decodeMillionValuesPerSec());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "rows=%d, sealedRows=%d, compressed=%d bytes, ratio=%.2fx, decode=%.1f M values/s",
+                    rows, sealedRows, compressedBytes, compressionRatio(), decodeMillionValuesPerSec());
+        }
+    }
+
+    /**
+     * 履歴の読み取り専用ビュー。圧縮ブロックは読み出し時にブロック単位でデコードする。
+     */
+    final class Snapshot {
+        private final List<Block> blocks;
+        private final int width;
+        private final int size;
+
+        private Snapshot(List<Block> blocks, int width, int size) {
+            this.blocks = blocks;
+            this.width = width;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int width() {
+            return width;
+        }
+
+        /**
+         * 指定列の値を時刻順に渡す（列 0 は time）。
+         */
+        void forEachInColumn(int column, DoubleConsumer out) {
+            for (Block b : blocks) {
+                decodeColumn(b, column, out);
+            }
+        }
+
+        /**
+         * 各行を時刻順に渡す。渡す配列は再利用されるため、保持する場合は複製すること。
+         */
+        void forEachRow(Consumer<double[]> out) {
+            double[] row = new double[width];
+            double[][] cols = new double[width][];
+            for (Block b : blocks) {
+                for (int c = 0; c < width; c++) {
+                    cols[c] = decodeToArray(b, c);
+                }
+                for (int i = 0; i < b.count(); i++) {
+                    for (int c = 0; c < width; c++) row[c] = cols[c][i];
+                    out.accept(row);
+                }
+            }
+        }
+
+        /**
+         * 指定列の [from, to) 行を配列にコピーする。範囲外のブロックはデコードしない。
+         */
+        void readColumn(int column, int from, int to, double[] dst, int dstOffset) {
+            int blockStart = 0;
+            for (Block b : blocks) {
+                int blockEnd = blockStart + b.count();
+                if (blockEnd > from && blockStart < to) {
+                    int lo = Math.max(from, blockStart);
+                    int hi = Math.min(to, blockEnd);
+                    double[] col = decodeToArray(b, column);
+                    System.arraycopy(col, lo - blockStart, dst, dstOffset + (lo - from), hi - lo);
+                }
+                if (blockEnd >= to) break;
+                blockStart = blockEnd;
+            }
+        }
+
+        /**
+         * 最後の行の複製（空なら null）。
+         */
+        double[] lastRow() {
+            if (blocks.isEmpty()) return null;
+            Block last = blocks.get(blocks.size() - 1);
+            double[] row = new double[width];
+            for (int c = 0; c < width; c++) {
+                double[] col = decodeToArray(last, c);
+                row[c] = col[last.count() - 1];
+            }
+            return row;
+        }
+
+        private double[] decodeToArray(Block b, int column) {
+            if (b instanceof RawBlock) {
+                return ((RawBlock) b).cols[column];
+            }
+            double[] out = new double[b.count()];
+            int[] i = {0};
+            decodeColumn(b, column, v -> out[i[0]++] = v);
+            return out;
+        }
+
+        private void decodeColumn(Block b, int column, DoubleConsumer out) {
+            if (b instanceof RawBlock) {
+                double[] col = ((RawBlock) b).cols[column];
+                for (int i = 0; i < b.count(); i++) out.accept(col[i]);
+                return;
+            }
+            long start = System.nanoTime();
+            ((SealedBlock) b).decode(column, out);
+            decodeNanos.addAndGet(System.nanoTime() - start);
+            decodedValues.addAndGet(b.count());
+        }
+    }
+
+    private interface Block {
+        int count();
+    }
+
+    /**
+     * 非圧縮ブロック（列指向、確定後は不変）
+     */
+    private static final class RawBlock implements Block {
+        final double[][] cols;
+        final int count;
+
+        RawBlock(double[][] cols, int count) {
+            this.cols = cols;
+            this.count = count;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+    }
+
+    /**
+     * 圧縮ブロック。列 0 (time) は delta-of-delta、それ以外は XOR で符号化する。
+     */
+    private static final class SealedBlock implements Block {
+        final GorillaCodec.EncodedColumn[] cols;
+        final int count;
+
+        private SealedBlock(GorillaCodec.EncodedColumn[] cols, int count) {
+            this.cols = cols;
+            this.count = count;
+        }
+
+        static SealedBlock seal(RawBlock raw) {
+            GorillaCodec.EncodedColumn[] cols = new GorillaCodec.EncodedColumn[raw.cols.length];
+            for (int c = 0; c < cols.length; c++) {
+                cols[c] = (c == 0)
+                        ? GorillaCodec.encodeTimes(raw.cols[c], raw.count)
+                        : GorillaCodec.encodeValues(raw.cols[c], raw.count);
+            }
+            return new SealedBlock(cols, raw.count);
+        }
+
+        void decode(int column, DoubleConsumer out) {
+            if (column == 0) GorillaCodec.decodeTimes(cols[column], count, out);
+            else GorillaCodec.decodeValues(cols[column], count, out);
+        }
+
+        long sizeBytes() {
+            long n = 0;
+            for (GorillaCodec.EncodedColumn c : cols) n += c.sizeBytes();
+            return n;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+    }
+}
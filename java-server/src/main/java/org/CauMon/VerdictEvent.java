@@ -0,0 +1,59 @@
+package org.CauMon;
+
+import java.util.Locale;
+
+/**
+ * 判定の確定（settled）を表すイベント。
+ * ロバストネス上限が負になった時点で違反（VIOLATION）、下限が正になった時点で充足（SATISFACTION）が確定する。
+ */
+public final class VerdictEvent {
+
+    public enum Type { VIOLATION, SATISFACTION }
+
+    private final Type type;
+    private final double tau;
+    private final double sampleTime;
+    private final int traceSize;
+    private final double upRob;
+    private final double lowRob;
+    private final long wallClockMillis;
+
+    VerdictEvent(Type type, double tau, double sampleTime, int traceSize, double upRob, double lowRob) {
+        this.type = type;
+        this.tau = tau;
+        this.sampleTime = sampleTime;
+        this.traceSize = traceSize;
+        this.upRob = upRob;
+        this.lowRob = lowRob;
+        this.wallClockMillis = System.currentTimeMillis();
+    }
+
+    public Type getType() { return type; }
+    /** 判定対象の時刻（stl_eval_mex_pw に渡した tau） */
+    public double getTau() { return tau; }
+    /** 確定を検出した時点の最新サンプル時刻 */
+    public double getSampleTime() { return sampleTime; }
+    public int getTraceSize() { return traceSize; }
+    public double getUpRob() { return upRob; }
+    public double getLowRob() { return lowRob; }
+    public long getWallClockMillis() { return wallClockMillis; }
+
+    /**
+     * HTTP コールバックや /events 応答用の JSON 表現（±Inf/NaN は null）
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"type\":\"%s\",\"tau\":%s,\"sampleTime\":%s,\"traceSize\":%d,\"up\":%s,\"low\":%s,\"wallClockMillis\":%d}",
+                type, num(tau), num(sampleTime), traceSize, num(upRob), num(lowRob), wallClockMillis);
+    }
+
+    private static String num(double v) {
+        return (Double.isNaN(v) || Double.isInfinite(v)) ? "null" : Double.toString(v);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s settled (tau=%.4f, at t=%.4f, traceSize=%d, up=%.4f, low=%.4f)",
+                type, tau, sampleTime, traceSize, upRob, lowRob);
+    }
+}
@@ -0,0 +1,15 @@
+package org.CauMon;
+
+/**
+ * 判定確定イベントの通知先。publish は評価スレッドから呼ばれるため、ブロックしない実装にすること。
+ * 標準の実装は {@link VerdictSinks} を参照。
+ */
+public interface VerdictSink {
+
+    void publish(VerdictEvent event);
+
+    /**
+     * 保持しているリソース（スレッド等）を解放する。
+     */
+    default void close() {}
+}
@@ -0,0 +1,187 @@
+package org.CauMon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link VerdictSink} の標準実装（ログ、HTTP コールバック、メモリキュー）。
+ */
+public final class VerdictSinks {
+
+    private static final Logger logger = Logger.getLogger(VerdictSinks.class.getName());
+
+    private VerdictSinks() {}
+
+    /**
+     * 指定文字列から sink を生成する。
+     * @param spec "log"、"queue"、または "http://..." のコールバック URL（null/空なら log）。
+     *             コールバック先は /start から誰でも指定できるため、ループバックのホストに限る
+     * @return 生成した sink
+     * @throws IllegalArgumentException 解釈できない指定、またはループバック以外のコールバック先の場合
+     */
+    public static VerdictSink fromSpec(String spec) {
+        if (spec == null || spec.trim().isEmpty() || spec.trim().equalsIgnoreCase("log")) {
+            return new LogSink();
+        }
+        String s = spec.trim();
+        if (s.equalsIgnoreCase("queue")) {
+            return new QueueSink(1024);
+        }
+        if (s.startsWith("http://") || s.startsWith("https://")) {
+            requireLoopback(s);
+            return new HttpCallbackSink(s);
+        }
+        throw new IllegalArgumentException("Unknown verdict sink: " + spec);
+    }
+
+    /**
+     * コールバック URL のホストがループバックアドレスだけに解決されることを確認する。
+     */
+    private static void requireLoopback(String url) {
+        String host;
+        try {
+            host = new URI(url).getHost();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid callback URL: " + url, e);
+        }
+        if (host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("Callback URL has no host: " + url);
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!address.isLoopbackAddress()) {
+                    throw new IllegalArgumentException("Callback host must be a loopback address: " + host);
+                }
+            }
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Unknown callback host: " + host, e);
+        }
+    }
+
+    /**
+     * ログに出力するだけの sink（既定）。
+     */
+    public static final class LogSink implements VerdictSink {
+        @Override
+        public void publish(VerdictEvent event) {
+            logger.info("Verdict " + event);
+        }
+    }
+
+    /**
+     * メモリ上のキューに保持する sink。容量を超えた場合は古いイベントから捨てる。
+     */
+    public static final class QueueSink implements VerdictSink {
+        private final BlockingQueue<VerdictEvent> queue;
+
+        public QueueSink(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        }
+
+        @Override
+        public void publish(VerdictEvent event) {
+            while (!queue.offer(event)) {
+                queue.poll();
+            }
+        }
+
+        /**
+         * キュー内のイベントをすべて取り出す。
+         */
+        public List<VerdictEvent> drain() {
+            List<VerdictEvent> out = new ArrayList<>();
+            queue.drainTo(out);
+            return out;
+        }
+
+        /**
+         * 次のイベントを最大 timeoutMillis 待って取り出す（無ければ null）。
+         */
+        public VerdictEvent poll(long timeoutMillis) throws InterruptedException {
+            return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * イベントを JSON で指定 URL に POST する sink。
+     * 送信は専用スレッドで行い、評価スレッドはブロックしない（送信待ちが溢れた場合は破棄）。
+     */
+    public static final class HttpCallbackSink implements VerdictSink {
+        private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+        private static final int READ_TIMEOUT_MILLIS = 2000;
+
+        private final URL url;
+        private final ExecutorService sender;
+
+        public HttpCallbackSink(String url) {
+            try {
+                this.url = new URL(url);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid callback URL: " + url, e);
+            }
+            this.sender = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(256), r -> {
+                        Thread t = new Thread(r, "VerdictSink-HttpCallback");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+
+        @Override
+        public void publish(VerdictEvent event) {
+            try {
+                sender.execute(() -> post(event));
+            } catch (RejectedExecutionException e) {
+                logger.warning("Verdict callback queue full; dropping event: " + event);
+            }
+        }
+
+        private void post(VerdictEvent event) {
+            byte[] body = event.toJson().getBytes(StandardCharsets.UTF_8);
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) url.openConnection();
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+                conn.setRequestMethod("POST");
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                conn.setFixedLengthStreamingMode(body.length);
+                try (OutputStream os = conn.getOutputStream()) {
+                    os.write(body);
+                }
+                int code = conn.getResponseCode();
+                if (code >= 300) {
+                    logger.warning("Verdict callback " + url + " responded " + code);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Verdict callback to " + url + " failed", e);
+            } finally {
+                if (conn != null) conn.disconnect();
+            }
+        }
+
+        @Override
+        public void close() {
+            sender.shutdown();
+        }
+    }
+}
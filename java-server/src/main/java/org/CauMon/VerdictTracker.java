@@ -0,0 +1,57 @@
+package org.CauMon;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 判定時刻（tau）ごとの確定状態を管理する。
+ * stl_eval_mex_pw の上限/下限はサンプルが増えるほど狭まるため、
+ * 上限 < 0 または下限 > 0 になった時点で結果は変わらない。確定済みの tau は再評価を省略できる。
+ */
+final class VerdictTracker {
+
+    private final Map<Double, VerdictEvent> settled = new LinkedHashMap<>();
+
+    /**
+     * ロバストネス区間が判定を確定させているか（上限 < 0 で違反、下限 > 0 で充足）。
+     */
+    static boolean isDecided(double up, double low) {
+        return up < 0 || low > 0;
+    }
+
+    synchronized boolean isSettled(double tau) {
+        return settled.containsKey(tau);
+    }
+
+    /**
+     * 最新のロバストネス区間を反映する。新たに確定した場合のみイベントを返す。
+     * @param tau 判定時刻
+     * @param up 最新のロバストネス上限
+     * @param low 最新のロバストネス下限
+     * @param sampleTime 評価に使った最新サンプルの時刻
+     * @param traceSize 評価に使った時間ステップ数
+     * @return 新たに確定したイベント（未確定または確定済みなら null）
+     */
+    synchronized VerdictEvent update(double tau, double up, double low, double sampleTime, int traceSize) {
+        if (settled.containsKey(tau)) return null;
+        VerdictEvent.Type type;
+        if (up < 0) {
+            type = VerdictEvent.Type.VIOLATION;
+        } else if (low > 0) {
+            type = VerdictEvent.Type.SATISFACTION;
+        } else {
+            return null;
+        }
+        VerdictEvent event = new VerdictEvent(type, tau, sampleTime, traceSize, up, low);
+        settled.put(tau, event);
+        return event;
+    }
+
+    synchronized VerdictEvent get(double tau) {
+        return settled.get(tau);
+    }
+
+    synchronized void reset() {
+        settled.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package org.CauMon;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link AtomProgram} による原子述語の一次式への変換・STL 式の置き換えと、
+ * スカラー版カーネル・{@link AtomEvaluator} の計算結果を手計算の値と比べて確認する。
+ */
+class AtomProgramTest {
+
+    private static final String DEFAULT_PHI = "alw_[0,50](d_rel[t] - 1.4 * v_ego[t] >= 4)";
+
+    @Test
+    void compilesDefaultFormula() {
+        AtomProgram program = AtomProgram.compile("d_rel,v_ego", DEFAULT_PHI);
+
+        assertEquals(1, program.atomCount());
+        assertEquals("alw_[0,50](atom1[t] > 0)", program.rewrittenPhi());
+        assertEquals("atom1", program.atomSignalStr());
+        AtomProgram.Atom atom = program.atom(0);
+        assertEquals("d_rel[t] - 1.4 * v_ego[t] >= 4", atom.source);
+        assertArrayEquals(new int[] { 1, 2 }, atom.columns);
+        assertArrayEquals(new double[] { 1.0, -1.4 }, atom.coefs);
+        assertEquals(-4.0, atom.constant);
+    }
+
+    @Test
+    void lessThanNegatesTheDifference() {
+        // ">" 系は 左辺 - 右辺、"<" 系は 右辺 - 左辺
+        AtomProgram greater = AtomProgram.compile("x", "ev_[0,1](x[t] > 3)");
+        assertArrayEquals(new double[] { 1.0 }, greater.atom(0).coefs);
+        assertEquals(-3.0, greater.atom(0).constant);
+
+        AtomProgram less = AtomProgram.compile("x", "ev_[0,1](x[t] <= 3)");
+        assertArrayEquals(new int[] { 1 }, less.atom(0).columns);
+        assertArrayEquals(new double[] { -1.0 }, less.atom(0).coefs);
+        assertEquals(3.0, less.atom(0).constant);
+
+        AtomProgram flipped = AtomProgram.compile("x", "ev_[0,1](3 > x[t])");
+        assertArrayEquals(less.atom(0).coefs, flipped.atom(0).coefs);
+        assertEquals(less.atom(0).constant, flipped.atom(0).constant);
+    }
+
+    @Test
+    void identicalAtomsShareOneSignal() {
+        AtomProgram program = AtomProgram.compile("x,y",
+                "alw_[0,10](x[t] < 3) and ev_[0,5](3 > x[t]) or alw_[0,2](y[t] >= x[t])");
+
+        assertEquals(2, program.atomCount());
+        assertEquals("alw_[0,10](atom1[t] > 0) and ev_[0,5](atom1[t] > 0) or alw_[0,2](atom2[t] > 0)",
+                program.rewrittenPhi());
+        assertEquals("atom1,atom2", program.atomSignalStr());
+        assertEquals("x[t] < 3", program.atom(0).source);
+        assertArrayEquals(new int[] { 1, 2 }, program.atom(1).columns);
+        assertArrayEquals(new double[] { -1.0, 1.0 }, program.atom(1).coefs);
+    }
+
+    @Test
+    void intervalBracketsAreNotPartOfTheAtom() {
+        AtomProgram program = AtomProgram.compile("x", "alw_[0,10] x[t] > 0");
+
+        assertEquals(1, program.atomCount());
+        assertEquals("alw_[0,10] atom1[t] > 0", program.rewrittenPhi());
+        assertEquals("x[t] > 0", program.atom(0).source);
+        assertArrayEquals(new double[] { 1.0 }, program.atom(0).coefs);
+        assertEquals(0.0, program.atom(0).constant);
+    }
+
+    @Test
+    void rejectsNonLinearAtoms() {
+        assertThrows(IllegalArgumentException.class, () -> AtomProgram.compile("x,y", "alw_[0,10](x[t]*y[t] > 0)"));
+        assertThrows(IllegalArgumentException.class, () -> AtomProgram.compile("x", "alw_[0,10](abs(x[t]) > 1)"));
+        assertThrows(IllegalArgumentException.class, () -> AtomProgram.compile("x", "alw_[0,10](x[t+1] > 0)"));
+        assertThrows(IllegalArgumentException.class, () -> AtomProgram.compile("x", "alw_[0,10](x[t] / x[t] > 0)"));
+    }
+
+    @Test
+    void scalarKernelMatchesHandComputedColumn() {
+        // 3 - (2 * x - 0.5 * y) = 3 - 2x + 0.5y（2 進で割り切れる値なので丸め誤差は出ない）
+        AtomProgram program = AtomProgram.compile("x,y", "alw_[0,10](2 * x[t] - 0.5 * y[t] < 3)");
+        AtomProgram.Atom atom = program.atom(0);
+        double[][] cols = {
+            { 0.0, 0.1, 0.2, 0.3, 0.4 },
+            { 0.0, 1.0, 1.5, -2.0, 4.0 },
+            { 0.0, 2.0, -4.0, 8.0, 1.0 },
+        };
+        double[] expected = { 99.0, 99.0, 3.0, 2.0, -2.0, 11.0, -4.5 };
+
+        double[] out = new double[expected.length];
+        Arrays.fill(out, 99.0);
+        new AtomKernels.Scalar().evaluate(cols, 5, atom.columns, atom.coefs, atom.constant, out, 2);
+        GorillaCodecTest.assertBitsEqual(expected, out, "scalar kernel");
+
+        // 既定式: d_rel - 1.4 * v_ego - 4
+        AtomProgram.Atom def = AtomProgram.compile("d_rel,v_ego", DEFAULT_PHI).atom(0);
+        double[][] dv = { { 0.0, 0.1, 0.2, 0.3 }, { 10.0, 5.0, 4.0, 0.0 }, { 0.0, 1.0, 2.0, 3.0 } };
+        double[] expectedDefault = { 6.0, -0.4, -2.8, -8.2 };
+        double[] outDefault = new double[4];
+        new AtomKernels.Scalar().evaluate(dv, 4, def.columns, def.coefs, def.constant, outDefault, 0);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(expectedDefault[i], outDefault[i], 1e-12, "row " + i);
+        }
+    }
+
+    @Test
+    void evaluatorComputesOnlyNewRows() {
+        AtomProgram program = AtomProgram.compile("x,y", "alw_[0,10](2 * x[t] - 0.5 * y[t] < 3)");
+        double[][] rows = {
+            { 0.0, 0.0, 0.0 }, { 0.1, 1.0, 2.0 }, { 0.2, 1.5, -4.0 }, { 0.3, -2.0, 8.0 }, { 0.4, 4.0, 1.0 },
+        };
+        TraceHistory history = new TraceHistory(2, 1);
+        AtomEvaluator evaluator = new AtomEvaluator(program, new AtomKernels.Scalar(), 3);
+        for (int i = 0; i < 3; i++) history.append(rows[i]);
+        evaluator.update(history.snapshot());
+        for (int i = 3; i < rows.length; i++) history.append(rows[i]);
+        evaluator.update(history.snapshot());
+
+        double[] out = new double[rows.length];
+        int[] n = {0};
+        evaluator.forEachValue(0, rows.length, v -> out[n[0]++] = v);
+        assertEquals(rows.length, n[0]);
+        GorillaCodecTest.assertBitsEqual(new double[] { 3.0, 2.0, -2.0, 11.0, -4.5 }, out, "atom1");
+    }
+}
@@ -0,0 +1,191 @@
+package org.CauMon;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ColumnarTraceWriter} で書き出した .cmc ファイルを {@link ColumnarTraceReader} で読み戻し、
+ * 複数ブロックにまたがる値・書き込まれていない区間の NaN・フッターの無いファイルの復元を確認する。
+ */
+class ColumnarTraceTest {
+
+    private static final int BLOCK_ROWS = 16;
+    private static final int ROWS = BLOCK_ROWS * 6 + 4;
+    private static final String[] SIGNALS = { "a", "b" };
+    /** ヘッダー: MAGIC + version + width、各列名は長さ(short) + UTF-8 */
+    private static final int DATA_START = 4 + 4 + 4 + (2 + 4) + (2 + 1) + (2 + 1);
+    /** 16 行・3 列の行ブロック: type + from + count + 値 */
+    private static final int ROW_BLOCK_BYTES = 4 + 8 + 4 + 3 * BLOCK_ROWS * 8;
+
+    @Test
+    void roundTripAcrossBlocks() throws IOException {
+        double[][] rows = sampleRows(ROWS);
+        double[][] rob = samplePair(ROWS, 0.5);
+        double[][] cau = samplePair(ROWS, -2.0);
+        Path dir = Files.createTempDirectory("cmc");
+        try {
+            Path file = write(dir.resolve("trace.cmc"), rows, rob, cau);
+            ColumnarTraceReader reader = ColumnarTraceReader.read(file);
+
+            assertTrue(reader.isComplete(), "footer should be present");
+            assertEquals(ROWS, reader.rows());
+            assertArrayEquals(new String[] { "time", "a", "b" }, reader.columnNames());
+            for (int c = 0; c < 3; c++) {
+                GorillaCodecTest.assertBitsEqual(column(rows, c), reader.column(c), "column " + c);
+            }
+            GorillaCodecTest.assertBitsEqual(column(rows, 2), reader.column("b"), "column b");
+            assertEquals(ROWS, reader.robustnessRows());
+            assertEquals(ROWS, reader.causationRows());
+            GorillaCodecTest.assertBitsEqual(rob[0], reader.upRobustness(), "up robustness");
+            GorillaCodecTest.assertBitsEqual(rob[1], reader.lowRobustness(), "low robustness");
+            GorillaCodecTest.assertBitsEqual(cau[0], reader.upCausation(), "up causation");
+            GorillaCodecTest.assertBitsEqual(cau[1], reader.lowCausation(), "low causation");
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    @Test
+    void robustnessShorterThanRowsReadsAsNaN() throws IOException {
+        int evaluated = BLOCK_ROWS * 2 + 5;
+        double[][] rows = sampleRows(ROWS);
+        double[][] rob = samplePair(evaluated, 0.5);
+        Path dir = Files.createTempDirectory("cmc");
+        try {
+            Path file = write(dir.resolve("trace.cmc"), rows, rob, null);
+            ColumnarTraceReader reader = ColumnarTraceReader.read(file);
+
+            assertEquals(ROWS, reader.rows());
+            assertEquals(evaluated, reader.robustnessRows());
+            assertEquals(0, reader.causationRows());
+            double[] up = reader.upRobustness();
+            double[] low = reader.lowRobustness();
+            assertEquals(ROWS, up.length);
+            GorillaCodecTest.assertBitsEqual(rob[0], Arrays.copyOf(up, evaluated), "evaluated up");
+            GorillaCodecTest.assertBitsEqual(rob[1], Arrays.copyOf(low, evaluated), "evaluated low");
+            for (int i = evaluated; i < ROWS; i++) {
+                assertTrue(Double.isNaN(up[i]) && Double.isNaN(low[i]), "robustness " + i + " should be NaN");
+            }
+            for (int i = 0; i < ROWS; i++) {
+                assertTrue(Double.isNaN(reader.upCausation()[i]), "causation " + i + " should be NaN");
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    @Test
+    void truncatedFileWithoutFooterIsRecovered() throws IOException {
+        double[][] rows = sampleRows(ROWS);
+        double[][] rob = samplePair(ROWS, 0.5);
+        double[][] cau = samplePair(ROWS, -2.0);
+        Path dir = Files.createTempDirectory("cmc");
+        try {
+            Path file = write(dir.resolve("trace.cmc"), rows, rob, cau);
+            long footerOffset = footerOffset(file);
+
+            // フッターだけが欠けた場合: ブロックはすべて読める
+            truncate(file, footerOffset);
+            ColumnarTraceReader reader = ColumnarTraceReader.read(file);
+            assertFalse(reader.isComplete(), "footer should be missing");
+            assertEquals(ROWS, reader.rows());
+            assertEquals(ROWS, reader.robustnessRows());
+            assertEquals(ROWS, reader.causationRows());
+            GorillaCodecTest.assertBitsEqual(column(rows, 1), reader.column(1), "column 1");
+            GorillaCodecTest.assertBitsEqual(cau[1], reader.lowCausation(), "low causation");
+
+            // 最後の因果解析ブロック（行 96..99）の書きかけ: そのブロックだけが捨てられる
+            truncate(file, footerOffset - 5);
+            reader = ColumnarTraceReader.read(file);
+            assertFalse(reader.isComplete());
+            assertEquals(ROWS, reader.rows());
+            assertEquals(ROWS, reader.robustnessRows());
+            assertEquals(BLOCK_ROWS * 6, reader.causationRows());
+            assertTrue(Double.isNaN(reader.upCausation()[ROWS - 1]));
+
+            // 4 つ目の行ブロックの書きかけ: 完全な 3 ブロック分の行だけが残る
+            truncate(file, DATA_START + 3L * ROW_BLOCK_BYTES + 100);
+            reader = ColumnarTraceReader.read(file);
+            assertFalse(reader.isComplete());
+            assertEquals(BLOCK_ROWS * 3, reader.rows());
+            assertEquals(0, reader.robustnessRows());
+            for (int c = 0; c < 3; c++) {
+                GorillaCodecTest.assertBitsEqual(Arrays.copyOf(column(rows, c), BLOCK_ROWS * 3), reader.column(c),
+                        "column " + c);
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * 停止時書き出し（非ストリーミング）で rows・ロバストネス・因果解析を書き、閉じる。
+     */
+    private static Path write(Path file, double[][] rows, double[][] rob, double[][] cau) throws IOException {
+        TraceHistory history = new TraceHistory(BLOCK_ROWS, 1);
+        for (double[] row : rows) history.append(row);
+        CausationCache causation = new CausationCache();
+        if (cau != null) causation.update(cau[0], cau[1]);
+        ColumnarTraceWriter writer = new ColumnarTraceWriter(file, false, history, causation, SIGNALS, BLOCK_ROWS, 0L);
+        if (rob != null) writer.offerRobustness(rob[0], rob[1]);
+        writer.close(5_000L);
+        return writer.file();
+    }
+
+    /** ファイル末尾（footerOffset + MAGIC）からフッターの位置を読む。 */
+    private static long footerOffset(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong(bytes.length - 8 - 4);
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static double[][] sampleRows(int n) {
+        double[][] rows = new double[n][3];
+        for (int i = 0; i < n; i++) {
+            rows[i][0] = i * 0.01;
+            rows[i][1] = Math.sin(i * 0.05);
+            rows[i][2] = (i % 7 == 0) ? -0.0 : i * 1.5;
+        }
+        return rows;
+    }
+
+    private static double[][] samplePair(int n, double offset) {
+        double[][] pair = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            pair[0][i] = offset + Math.cos(i * 0.1);
+            pair[1][i] = offset - Math.cos(i * 0.1);
+        }
+        return pair;
+    }
+
+    private static double[] column(double[][] rows, int c) {
+        double[] col = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) col[i] = rows[i][c];
+        return col;
+    }
+}
@@ -0,0 +1,143 @@
+package org.CauMon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link GorillaCodec} の往復（エンコード→デコード）でビット列が完全に一致することを確認する。
+ */
+class GorillaCodecTest {
+
+    // delta-of-delta の各区間（7/9/12 ビット、64 ビット）の境界とその外側
+    private static final long[] DOD_BOUNDARIES = {
+            0, 1, -1,
+            63, 64, -64, -65,
+            255, 256, -256, -257,
+            2047, 2048, -2048, -2049,
+            1L << 20, -(1L << 20),
+    };
+
+    @Test
+    void timesRoundTripAtEveryBucketBoundary() {
+        for (long dod : DOD_BOUNDARIES) {
+            // ほぼ等間隔の時刻の途中に1回だけ dod のずれを入れ、後続の時刻もずれないことを確認する
+            long[] bits = new long[8];
+            long delta = 1L << 30;
+            bits[0] = Double.doubleToRawLongBits(1.0);
+            for (int i = 1; i < bits.length; i++) {
+                if (i == 3) delta += dod;
+                bits[i] = bits[i - 1] + delta;
+            }
+            assertTimesRoundTrip(toDoubles(bits), "dod=" + dod);
+        }
+    }
+
+    @Test
+    void timesRoundTripAllBoundariesInOneBlock() {
+        long[] bits = new long[DOD_BOUNDARIES.length * 2 + 2];
+        long delta = 1L << 30;
+        bits[0] = Double.doubleToRawLongBits(0.5);
+        bits[1] = bits[0] + delta;
+        for (int i = 2; i < bits.length; i++) {
+            // dod と -dod を交互に入れて delta を元に戻す
+            long d = DOD_BOUNDARIES[(i - 2) / 2];
+            delta += ((i & 1) == 0) ? d : -d;
+            bits[i] = bits[i - 1] + delta;
+        }
+        assertTimesRoundTrip(toDoubles(bits), "all boundaries");
+    }
+
+    @Test
+    void timesRoundTripJitteredSampling() {
+        Random rnd = new Random(42);
+        double[] times = new double[4096];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i * 0.01 + (rnd.nextDouble() - 0.5) * 1e-6;
+        }
+        assertTimesRoundTrip(times, "jitter");
+    }
+
+    @Test
+    void timesRoundTripShortColumns() {
+        assertTimesRoundTrip(new double[0], "empty");
+        assertTimesRoundTrip(new double[] { 3.25 }, "single");
+        assertTimesRoundTrip(new double[] { 3.25, 3.5 }, "two");
+    }
+
+    @Test
+    void valuesRoundTripSmoothAndRandom() {
+        Random rnd = new Random(7);
+        double[] smooth = new double[2048];
+        double[] random = new double[2048];
+        for (int i = 0; i < smooth.length; i++) {
+            smooth[i] = Math.sin(i * 0.01);
+            random[i] = Double.longBitsToDouble(rnd.nextLong());
+        }
+        assertValuesRoundTrip(smooth, "smooth");
+        assertValuesRoundTrip(random, "random");
+    }
+
+    @Test
+    void valuesRoundTripSpecialValues() {
+        double[] values = {
+                0.0, -0.0, 0.0, 1.0, 1.0, 1.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, Double.MIN_NORMAL, 1.0 + Math.ulp(1.0), 1.0,
+                Double.longBitsToDouble(0x7ff8000000000001L), Double.longBitsToDouble(0x8000000000000001L),
+        };
+        assertValuesRoundTrip(values, "special");
+        assertValuesRoundTrip(new double[0], "empty");
+        assertValuesRoundTrip(new double[] { 42.0 }, "single");
+    }
+
+    @Test
+    void valuesRoundTripEveryXorWidth() {
+        // XOR の有効ビットが 1..64 ビットになる値の列（先頭/末尾のゼロの数を網羅する）
+        double[] values = new double[64 * 3 + 1];
+        long prev = 0;
+        values[0] = Double.longBitsToDouble(prev);
+        int k = 1;
+        for (int width = 1; width <= 64; width++) {
+            for (int shift : new int[] { 0, 64 - width, (64 - width) / 2 }) {
+                long mask = (width == 64 ? -1L : (1L << width) - 1) << shift;
+                prev ^= mask;
+                values[k++] = Double.longBitsToDouble(prev);
+            }
+        }
+        assertValuesRoundTrip(values, "xor widths");
+    }
+
+    private static double[] toDoubles(long[] bits) {
+        double[] d = new double[bits.length];
+        for (int i = 0; i < bits.length; i++) d[i] = Double.longBitsToDouble(bits[i]);
+        return d;
+    }
+
+    private static void assertTimesRoundTrip(double[] times, String label) {
+        GorillaCodec.EncodedColumn col = GorillaCodec.encodeTimes(times, times.length);
+        double[] out = new double[times.length];
+        int[] i = {0};
+        GorillaCodec.decodeTimes(col, times.length, v -> out[i[0]++] = v);
+        assertEquals(times.length, i[0], label);
+        assertBitsEqual(times, out, label);
+    }
+
+    private static void assertValuesRoundTrip(double[] values, String label) {
+        GorillaCodec.EncodedColumn col = GorillaCodec.encodeValues(values, values.length);
+        double[] out = new double[values.length];
+        int[] i = {0};
+        GorillaCodec.decodeValues(col, values.length, v -> out[i[0]++] = v);
+        assertEquals(values.length, i[0], label);
+        assertBitsEqual(values, out, label);
+    }
+
+    static void assertBitsEqual(double[] expected, double[] actual, String label) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]),
+                    label + " at " + i + ": expected " + expected[i] + " but was " + actual[i]
+                            + " (" + Arrays.toString(Arrays.copyOfRange(expected, Math.max(0, i - 2), i + 1)) + ")");
+        }
+    }
+}
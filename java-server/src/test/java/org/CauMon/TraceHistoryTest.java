@@ -0,0 +1,110 @@
+package org.CauMon;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link TraceHistory} の圧縮ブロックと非圧縮ブロックをまたいだ読み出しが、追加した値と完全に一致することを確認する。
+ */
+class TraceHistoryTest {
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int ROWS = BLOCK_SIZE * 7 + 13;
+
+    @Test
+    void columnsRoundTripAcrossSealedAndRawBlocks() {
+        double[][] rows = sampleRows(ROWS, 3);
+        TraceHistory history = new TraceHistory(BLOCK_SIZE, 1);
+        for (double[] row : rows) history.append(row);
+
+        assertEquals(ROWS, history.size());
+        assertEquals(3, history.width());
+        assertTrue(history.stats().sealedRows > 0, "older blocks should be sealed");
+
+        TraceHistory.Snapshot snap = history.snapshot();
+        for (int c = 0; c < 3; c++) {
+            double[] out = new double[ROWS];
+            int[] i = {0};
+            snap.forEachInColumn(c, v -> out[i[0]++] = v);
+            assertEquals(ROWS, i[0]);
+            GorillaCodecTest.assertBitsEqual(column(rows, c), out, "column " + c);
+        }
+    }
+
+    @Test
+    void rowsAndRangesRoundTrip() {
+        double[][] rows = sampleRows(ROWS, 2);
+        TraceHistory history = new TraceHistory(BLOCK_SIZE, 0);
+        for (double[] row : rows) history.append(row);
+        TraceHistory.Snapshot snap = history.snapshot();
+
+        List<double[]> read = new ArrayList<>();
+        snap.forEachRow(r -> read.add(r.clone()));
+        assertEquals(ROWS, read.size());
+        for (int i = 0; i < ROWS; i++) {
+            GorillaCodecTest.assertBitsEqual(rows[i], read.get(i), "row " + i);
+        }
+
+        // ブロック境界をまたぐ範囲・ブロック内の範囲
+        int[][] ranges = { {0, ROWS}, {BLOCK_SIZE - 3, BLOCK_SIZE * 2 + 5}, {10, 20}, {ROWS - 13, ROWS} };
+        for (int[] r : ranges) {
+            double[] dst = new double[r[1] - r[0] + 1];
+            snap.readColumn(0, r[0], r[1], dst, 1);
+            double[] expected = new double[dst.length];
+            System.arraycopy(column(rows, 0), r[0], expected, 1, r[1] - r[0]);
+            GorillaCodecTest.assertBitsEqual(expected, dst, "range " + r[0] + ".." + r[1]);
+        }
+
+        assertArrayEquals(rows[ROWS - 1], snap.lastRow());
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterAppends() {
+        TraceHistory history = new TraceHistory(BLOCK_SIZE, 1);
+        double[][] rows = sampleRows(ROWS, 2);
+        for (int i = 0; i < 100; i++) history.append(rows[i]);
+        TraceHistory.Snapshot snap = history.snapshot();
+        for (int i = 100; i < ROWS; i++) history.append(rows[i]);
+
+        assertEquals(100, snap.size());
+        assertArrayEquals(rows[99], snap.lastRow());
+    }
+
+    @Test
+    void rejectsRowsOfDifferentWidth() {
+        TraceHistory history = new TraceHistory();
+        assertNull(history.snapshot().lastRow());
+        history.append(new double[] { 0.0, 1.0 });
+        assertThrows(IllegalArgumentException.class, () -> history.append(new double[] { 0.0, 1.0, 2.0 }));
+        assertEquals(1, history.size());
+    }
+
+    /**
+     * ほぼ等間隔（ジッタ付き）の時刻と、滑らかな信号・定数・乱数の列。
+     */
+    private static double[][] sampleRows(int n, int width) {
+        Random rnd = new Random(1);
+        double[][] rows = new double[n][width];
+        for (int i = 0; i < n; i++) {
+            rows[i][0] = i * 0.01 + (i % 5 == 0 ? rnd.nextGaussian() * 1e-9 : 0.0);
+            for (int c = 1; c < width; c++) {
+                rows[i][c] = (c == 1) ? Math.sin(i * 0.05) : (i % 50 < 25 ? 1.0 : rnd.nextDouble());
+            }
+        }
+        return rows;
+    }
+
+    private static double[] column(double[][] rows, int c) {
+        double[] col = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) col[i] = rows[i][c];
+        return col;
+    }
+}